@@ -1,11 +1,16 @@
 package com.github.shautvast.contiguous;
 
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.json.UTF8JsonGenerator;
 import com.fasterxml.jackson.databind.SerializerProvider;
 import com.fasterxml.jackson.databind.ser.std.StdSerializer;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.Iterator;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 
 public class ListSerializer extends StdSerializer<ContiguousList<?>> {
 
@@ -18,16 +23,105 @@ public class ListSerializer extends StdSerializer<ContiguousList<?>> {
     public void serialize(
             ContiguousList<?> clist, JsonGenerator generator, SerializerProvider provider)
             throws IOException {
-        generator.writeStartArray();
+        // element by element through the generator, so that it writes the separators and keeps its own buffering
+        // A UTF-8 generator copies the bytes as they are. Others get a String: a Writer needs chars anyway,
+        // and a generator that buffers tokens would keep the reused bytes
+        boolean utf8 = generator instanceof UTF8JsonGenerator;
+        RawJson json = new RawJson();
+        generator.writeStartArray(clist, clist.size());
+        for (int i = 0; i < clist.size(); i++) {
+            json.reset();
+            clist.writeJson(i, json);
+            if (utf8) {
+                generator.writeRawValue(json);
+            } else {
+                generator.writeRawValue(json.getValue());
+            }
+        }
+        generator.writeEndArray();
+        if (!clist.getStorage().isOffHeap()) {
+            clist.close();
+        } // off-heap lists are long-lived, so closing them is up to the owner
+
+    }
 
-        Iterator<String> jsons = clist.jsonIterator();
-        while (jsons.hasNext()) {
-            String next = jsons.next();
-            generator.writeRawValue(next);
+    /*
+     * The UTF-8 JSON of one element. Only meant for writeRawValue, so only the unquoted methods do something
+     */
+    private static final class RawJson extends ByteArrayOutputStream implements SerializableString {
+
+        @Override
+        public String getValue() {
+            return new String(buf, 0, count, StandardCharsets.UTF_8);
         }
 
-        generator.writeEndArray();
-        clist.close();
+        @Override
+        public int charLength() {
+            return getValue().length();
+        }
+
+        @Override
+        public byte[] asUnquotedUTF8() {
+            return toByteArray();
+        }
+
+        @Override
+        public int appendUnquotedUTF8(byte[] buffer, int offset) {
+            if (count > buffer.length - offset) {
+                return -1;
+            }
+            System.arraycopy(buf, 0, buffer, offset, count);
+            return count;
+        }
+
+        @Override
+        public int appendUnquoted(char[] buffer, int offset) {
+            return -1; // the caller falls back to getValue
+        }
+
+        @Override
+        public int writeUnquotedUTF8(OutputStream out) throws IOException {
+            writeTo(out);
+            return count;
+        }
+
+        @Override
+        public int putUnquotedUTF8(ByteBuffer buffer) {
+            if (count > buffer.remaining()) {
+                return -1;
+            }
+            buffer.put(buf, 0, count);
+            return count;
+        }
+
+        @Override
+        public char[] asQuotedChars() {
+            throw new UnsupportedOperationException("raw value");
+        }
+
+        @Override
+        public byte[] asQuotedUTF8() {
+            throw new UnsupportedOperationException("raw value");
+        }
+
+        @Override
+        public int appendQuotedUTF8(byte[] buffer, int offset) {
+            throw new UnsupportedOperationException("raw value");
+        }
+
+        @Override
+        public int appendQuoted(char[] buffer, int offset) {
+            throw new UnsupportedOperationException("raw value");
+        }
+
+        @Override
+        public int writeQuotedUTF8(OutputStream out) {
+            throw new UnsupportedOperationException("raw value");
+        }
+
+        @Override
+        public int putQuotedUTF8(ByteBuffer buffer) {
+            throw new UnsupportedOperationException("raw value");
+        }
     }
 }
-
@@ -1,11 +1,22 @@
 package com.github.shautvast.contiguous;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class ListSerializerTest {
@@ -48,4 +59,91 @@ class ListSerializerTest {
                         "{\"name\": \"Publishing houses of Ursa Minor\"}]",
                 json);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testObjectListToBytes() throws JsonProcessingException {
+        ContiguousList<AdamsObject> objects = new ContiguousList<>(AdamsObject.class);
+        objects.add(new AdamsObject("Vogon \"poetry\""));
+        objects.add(new AdamsObject("Pan Galactic Gargle Blaster"));
+
+        byte[] json = mapper.writeValueAsBytes(Collections.singletonMap("objects", objects));
+        assertEquals("{\"objects\":[{\"name\": \"Vogon \\\"poetry\\\"\"},{\"name\": \"Pan Galactic Gargle Blaster\"}]}",
+                new String(json, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testThroughGenerator() throws IOException {
+        ContiguousList<String> strings = new ContiguousList<>(String.class);
+        strings.add("Magrathea");
+        int[] flushes = new int[1];
+        ByteArrayOutputStream out = new ByteArrayOutputStream() {
+            @Override
+            public void flush() {
+                flushes[0]++;
+            }
+        };
+
+        JsonGenerator generator = mapper.getFactory().createGenerator(out);
+        generator.writeStartArray();
+        mapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE).writeValue(generator, strings);
+        generator.writeString("Damogran");
+        generator.writeEndArray();
+        // the list doesn't commit the stream, the output is still in the generator
+        assertEquals(0, out.size());
+        assertEquals(0, flushes[0]);
+
+        generator.close();
+        assertEquals("[[\"Magrathea\"],\"Damogran\"]", new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testByteAndWriterTargets() throws IOException {
+        String expected = "{\"objects\":[{\"name\": \"Tr\u00e9s \\\"Magrathean\\\" \uD83D\uDE00\"},{\"name\": null}],\"count\":2}";
+        for (boolean bytes : new boolean[]{false, true}) {
+            ContiguousList<AdamsObject> objects = new ContiguousList<>(AdamsObject.class);
+            objects.add(new AdamsObject("Tr\u00e9s \"Magrathean\" \uD83D\uDE00"));
+            objects.add(new AdamsObject(null));
+            Map<String, Object> value = new LinkedHashMap<>();
+            value.put("objects", objects);
+            value.put("count", 2);
+
+            if (bytes) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                mapper.writeValue(out, value);
+                assertEquals(expected, new String(out.toByteArray(), StandardCharsets.UTF_8));
+            } else {
+                StringWriter out = new StringWriter();
+                mapper.writeValue(out, value);
+                assertEquals(expected, out.toString());
+            }
+        }
+    }
+
+    @Test
+    public void testClosesHeapListsOnly() throws JsonProcessingException {
+        for (boolean offHeap : new boolean[]{false, true}) {
+            int[] releases = new int[1];
+            Storage storage = new Storage() {
+                @Override
+                public ByteBuffer allocate(int capacity) {
+                    return ByteBuffer.allocate(capacity);
+                }
+
+                @Override
+                public void release(ByteBuffer buffer) {
+                    releases[0]++;
+                }
+
+                @Override
+                public boolean isOffHeap() {
+                    return offHeap;
+                }
+            };
+            ContiguousList<String> strings = new ContiguousList<>(String.class, Storage.paged(storage, 1 << 10));
+            strings.add("Heart of Gold");
+
+            assertEquals("[\"Heart of Gold\"]", mapper.writeValueAsString(strings));
+            assertEquals(offHeap ? 0 : 1, releases[0]);
+        }
+    }
+}
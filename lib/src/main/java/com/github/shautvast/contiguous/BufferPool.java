@@ -0,0 +1,186 @@
+package com.github.shautvast.contiguous;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reuses the heap buffers of lists that are closed (or that have grown), see {@link Storage#HEAP}.
+ * <p>
+ * Buffers come in sizes that are a power of two, from 4kB to 1GB. A request is rounded up to the next size,
+ * so every released buffer can be used again for any request of its size class. A buffer is handed out to one
+ * list at a time. Larger requests are not pooled.
+ * <p>
+ * The pool keeps at most {@link #getMaxRetainedBytes()} bytes. When a buffer is released while the pool is full,
+ * buffers of other sizes are evicted to make room: from the largest size class down, and within a size class
+ * the least recently released one first. When that can't make enough room, because the buffer is larger than
+ * the budget or its own size class takes up the rest, nothing is evicted and the buffer is left to the garbage
+ * collector. Every thread in addition keeps one buffer per size up to 64kB to itself, which are not counted.
+ * <p>
+ * Thread safe.
+ */
+public final class BufferPool {
+    private static final int MIN_SHIFT = 12;
+    private static final int MAX_SHIFT = 30;
+    private static final int LOCAL_MAX_SHIFT = 16;
+    private static final long DEFAULT_MAX_RETAINED_BYTES = 64L << 20;
+
+    private static final BufferPool HEAP = new BufferPool(DEFAULT_MAX_RETAINED_BYTES);
+
+    private final long maxRetainedBytes;
+    private final AtomicLong retainedBytes = new AtomicLong();
+
+    // per size class, most recently released first
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final ConcurrentLinkedDeque<ByteBuffer>[] pooled = new ConcurrentLinkedDeque[MAX_SHIFT - MIN_SHIFT + 1];
+    // the number of buffers per size class, which the deques can't tell in constant time
+    private final AtomicIntegerArray pooledCounts = new AtomicIntegerArray(MAX_SHIFT - MIN_SHIFT + 1);
+    private final ThreadLocal<ByteBuffer[]> local =
+            ThreadLocal.withInitial(() -> new ByteBuffer[LOCAL_MAX_SHIFT - MIN_SHIFT + 1]);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    BufferPool(long maxRetainedBytes) {
+        this.maxRetainedBytes = maxRetainedBytes;
+        for (int i = 0; i < pooled.length; i++) {
+            pooled[i] = new ConcurrentLinkedDeque<>();
+        }
+    }
+
+    /**
+     * @return the pool of the heap storage
+     */
+    public static BufferPool heap() {
+        return HEAP;
+    }
+
+    /*
+     * returns a buffer of at least capacity bytes, with position 0
+     */
+    ByteBuffer get(int capacity) {
+        int sizeClass = sizeClass(capacity);
+        if (sizeClass < 0) {
+            misses.increment();
+            return ByteBuffer.allocate(capacity);
+        }
+        ByteBuffer buffer = null;
+        if (sizeClass <= LOCAL_MAX_SHIFT - MIN_SHIFT) {
+            ByteBuffer[] buffers = local.get();
+            buffer = buffers[sizeClass];
+            buffers[sizeClass] = null;
+        }
+        if (buffer == null) {
+            buffer = pooled[sizeClass].pollFirst();
+            if (buffer != null) {
+                pooledCounts.decrementAndGet(sizeClass);
+                retainedBytes.addAndGet(-buffer.capacity());
+            }
+        }
+        if (buffer == null) {
+            misses.increment();
+            return ByteBuffer.allocate(1 << (sizeClass + MIN_SHIFT));
+        }
+        hits.increment();
+        buffer.clear();
+        return buffer;
+    }
+
+    /*
+     * the buffer must not be used by the caller afterwards
+     */
+    void release(ByteBuffer buffer) {
+        int capacity = buffer.capacity();
+        int sizeClass = sizeClass(capacity);
+        if (sizeClass < 0 || capacity != 1 << (sizeClass + MIN_SHIFT) || buffer.isDirect() || buffer.isReadOnly()) {
+            return; // not one of ours
+        }
+        if (sizeClass <= LOCAL_MAX_SHIFT - MIN_SHIFT) {
+            ByteBuffer[] buffers = local.get();
+            if (buffers[sizeClass] == null) {
+                buffers[sizeClass] = buffer;
+                return;
+            }
+        }
+        if (capacity > maxRetainedBytes - ((long) pooledCounts.get(sizeClass) << (sizeClass + MIN_SHIFT))) {
+            return; // evicting the other size classes would not make enough room, so don't empty them for nothing
+        }
+        while (true) {
+            long retained = retainedBytes.get();
+            if (retained + capacity <= maxRetainedBytes) {
+                if (retainedBytes.compareAndSet(retained, retained + capacity)) {
+                    pooled[sizeClass].offerFirst(buffer);
+                    pooledCounts.incrementAndGet(sizeClass);
+                    return;
+                }
+            } else if (!evictOther(sizeClass)) {
+                return;
+            }
+        }
+    }
+
+    /*
+     * Evicts the least recently released buffer of the largest other size class. Evicting one of the same size
+     * to make room for this one would gain nothing.
+     */
+    private boolean evictOther(int sizeClass) {
+        for (int i = pooled.length - 1; i >= 0; i--) {
+            if (i != sizeClass) {
+                ByteBuffer evicted = pooled[i].pollLast();
+                if (evicted != null) {
+                    pooledCounts.decrementAndGet(i);
+                    retainedBytes.addAndGet(-evicted.capacity());
+                    evictions.increment();
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /*
+     * the index of the smallest power of two >= capacity, -1 if too large to pool
+     */
+    private static int sizeClass(int capacity) {
+        if (capacity <= 1 << MIN_SHIFT) {
+            return 0;
+        }
+        int shift = 32 - Integer.numberOfLeadingZeros(capacity - 1);
+        return shift > MAX_SHIFT ? -1 : shift - MIN_SHIFT;
+    }
+
+    /**
+     * @return the number of requests that were served with a released buffer
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of requests for which a new buffer was allocated
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the number of buffers that were dropped to stay within the budget
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return the number of bytes in the pool, not counting the buffers kept by threads
+     */
+    public long getRetainedBytes() {
+        return retainedBytes.get();
+    }
+
+    public long getMaxRetainedBytes() {
+        return maxRetainedBytes;
+    }
+}
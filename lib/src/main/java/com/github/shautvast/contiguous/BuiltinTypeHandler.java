@@ -65,6 +65,14 @@ abstract class BuiltinTypeHandler<T> extends TypeHandler {
         }
     }
 
+    /**
+     * The nr of bytes that a value takes in the {@link Layout#FIXED_WIDTH} layout, type byte included.
+     * -1 (the default) means the type does not have a fixed width.
+     */
+    int getFixedWidth() {
+        return -1;
+    }
+
     /**
      * Certain types can easily be stored as another known type, for instance
      * a BigDecimal can be stored as a String.
@@ -16,6 +16,11 @@ class ByteHandler extends BuiltinTypeHandler<Byte> {
         list.storeByte(value);
     }
 
+    @Override
+    int getFixedWidth() {
+        return 2; // type + 1 byte
+    }
+
     @Override
     public void setValue(Object instance, Object value) {
         super.setValue(instance, ((Long) value).byteValue());
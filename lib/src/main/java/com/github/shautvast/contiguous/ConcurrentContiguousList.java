@@ -0,0 +1,312 @@
+package com.github.shautvast.contiguous;
+
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A {@link ContiguousList} variant that any number of threads can add to at the same time, without locking.
+ * <p>
+ * Every thread encodes the element on its own, then reserves room for the bytes in the shared pages with a single
+ * compare-and-set on the write position, so threads only contend for that one number. An element is visible
+ * (counted in size(), readable with get()) once it and all elements before it have been fully written.
+ * Elements are ordered by the moment their write finished, not by the moment add was called.
+ * <p>
+ * Reading is thread safe as well, also while elements are being added.
+ * <p>
+ * The data is kept on the heap, in pages of 64kB. Elements are stored in the {@link Layout#ROW} layout.
+ * Removing elements and clear() are not supported.
+ *
+ * @param <E> the element type
+ */
+public class ConcurrentContiguousList<E> extends NotImplementedList<E> {
+
+    private static final int PAGE_SIZE = 1 << 16;
+    private static final int LENGTH_SIZE = 4; // every element is preceded by its length
+    private static final int FIRST_BUCKET_BITS = 10;
+    private static final int FIRST_BUCKET_SIZE = 1 << FIRST_BUCKET_BITS;
+    private static final int BUCKETS = 22; // enough for Integer.MAX_VALUE entries
+
+    private final Class<E> type;
+
+    // encode and decode one element at a time, in the thread that adds or gets it, so that the real work happens
+    // in parallel. Taken from here and handed back, so there are only as many as threads that used the list at once.
+    // Not a ThreadLocal, that would keep them (and the element class) in every thread after the list is gone
+    private final Queue<ContiguousList<E>> scratch = new ConcurrentLinkedQueue<>();
+
+    // page index in the upper 32 bits, position in the page in the lower 32
+    private final AtomicLong writePosition = new AtomicLong();
+    private final PageVector pages = new PageVector();
+
+    // per element: page index << 32 | position + 1, so that 0 means not yet written
+    private final LongVector elements = new LongVector();
+    private final AtomicInteger nextIndex = new AtomicInteger();
+    private final AtomicInteger size = new AtomicInteger(); // the number of elements that are written without gaps
+
+    public ConcurrentContiguousList(Class<E> type) {
+        this.type = type;
+    }
+
+    @Override
+    public boolean add(E element) {
+        if (element == null) {
+            return false;
+        }
+        ContiguousList<E> encoder = takeScratch();
+        long position;
+        try {
+            encoder.clear();
+            encoder.add(element);
+            int length = encoder.getBufferPosition();
+
+            position = reserve(LENGTH_SIZE + length);
+            int pageIndex = (int) (position >>> 32);
+            int offset = (int) position;
+            byte[] page = getPage(pageIndex, LENGTH_SIZE + length);
+            page[offset] = (byte) (length >>> 24);
+            page[offset + 1] = (byte) (length >>> 16);
+            page[offset + 2] = (byte) (length >>> 8);
+            page[offset + 3] = (byte) length;
+            ByteBuffer encoded = encoder.getBuffer().duplicate();
+            encoded.position(0);
+            encoded.get(page, offset + LENGTH_SIZE, length);
+        } finally {
+            scratch.offer(encoder);
+        }
+
+        int index = nextIndex.getAndIncrement();
+        elements.set(index, position + 1);
+        publish();
+        return true;
+    }
+
+    private ContiguousList<E> takeScratch() {
+        ContiguousList<E> list = scratch.poll();
+        return list != null ? list : new ContiguousList<>(type);
+    }
+
+    // for tests
+    ContiguousList<E> peekScratch() {
+        return scratch.peek();
+    }
+
+    /*
+     * returns the page index and the offset in that page where `length` bytes can be written
+     */
+    private long reserve(int length) {
+        while (true) {
+            long current = writePosition.get();
+            int pageIndex = (int) (current >>> 32);
+            int offset = (int) current;
+            if (offset + length <= PAGE_SIZE) {
+                if (writePosition.compareAndSet(current, current + length)) {
+                    return current;
+                }
+            } else {
+                // on to the next page. An element that is larger than a page gets a page of its own
+                long next = (long) (pageIndex + 1) << 32;
+                if (writePosition.compareAndSet(current, next | Math.min(length, PAGE_SIZE))) {
+                    return next;
+                }
+            }
+        }
+    }
+
+    /*
+     * pages are created by the first thread that needs them
+     */
+    private byte[] getPage(int pageIndex, int length) {
+        byte[] page = pages.get(pageIndex);
+        if (page == null) {
+            // a page for a large element is only used by the thread that reserved it
+            page = pages.setIfAbsent(pageIndex, new byte[Math.max(length, PAGE_SIZE)]);
+        }
+        return page;
+    }
+
+    /*
+     * Moves size past all elements that are completely written. Any thread can do that for the others:
+     * a thread that finds the next element not yet written leaves it to the thread that writes it.
+     */
+    private void publish() {
+        int published = size.get();
+        while (published < nextIndex.get() && elements.get(published) != 0) {
+            size.compareAndSet(published, published + 1);
+            published = size.get();
+        }
+    }
+
+    @Override
+    public E get(int index) {
+        long position = getPosition(index);
+        byte[] page = pages.get((int) (position >>> 32));
+        int offset = (int) position;
+        int length = ((page[offset] & 0xFF) << 24) | ((page[offset + 1] & 0xFF) << 16)
+                | ((page[offset + 2] & 0xFF) << 8) | (page[offset + 3] & 0xFF);
+
+        ContiguousList<E> decoder = takeScratch();
+        try {
+            decoder.clear();
+            decoder.ensureFree(length);
+            ByteBuffer buffer = decoder.getBuffer().duplicate();
+            buffer.position(0);
+            buffer.put(page, offset + LENGTH_SIZE, length);
+            decoder.restore(1, length);
+            decoder.getElementIndices().add(length); // clear left the 0 of the first element
+            return decoder.get(0);
+        } finally {
+            scratch.offer(decoder);
+        }
+    }
+
+    private long getPosition(int index) {
+        if (index < 0 || index >= size.get()) {
+            throw new IndexOutOfBoundsException("index <0 or >" + size.get());
+        }
+        return elements.get(index) - 1;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends E> collection) {
+        for (E element : collection) {
+            add(element);
+        }
+        return true;
+    }
+
+    /**
+     * The number of elements that are completely written. Adds that are still in progress are not counted.
+     */
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public Object[] toArray() {
+        int size = size();
+        Object[] objects = new Object[size];
+        for (int i = 0; i < size; i++) {
+            objects[i] = get(i);
+        }
+        return objects;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T[] toArray(T[] ts) {
+        int size = size();
+        if (size > ts.length) {
+            ts = (T[]) Array.newInstance(ts.getClass().getComponentType(), size);
+        }
+        for (int i = 0; i < size; i++) {
+            ts[i] = (T) get(i);
+        }
+        return ts;
+    }
+
+    /**
+     * Iterates the elements that were added when the iterator was created.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        int size = size();
+        return new Iterator<E>() {
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override
+            public E next() {
+                if (index >= size) {
+                    throw new NoSuchElementException();
+                }
+                return get(index++);
+            }
+        };
+    }
+
+    /**
+     * Not supported, because other threads may be adding elements
+     */
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("A concurrent list can not be cleared");
+    }
+
+    public Class<E> getType() {
+        return type;
+    }
+
+    /*
+     * Buckets of doubling size: 1024, 2048, 4096... created when first needed. Existing buckets never move,
+     * so there is no copying on growth that other threads could miss.
+     */
+    private static int bucket(int index) {
+        int shifted = index + FIRST_BUCKET_SIZE;
+        return 31 - Integer.numberOfLeadingZeros(shifted) - FIRST_BUCKET_BITS;
+    }
+
+    private static int offsetInBucket(int index) {
+        int shifted = index + FIRST_BUCKET_SIZE;
+        return shifted - Integer.highestOneBit(shifted);
+    }
+
+    private static final class LongVector {
+        private final AtomicReferenceArray<AtomicLongArray> buckets = new AtomicReferenceArray<>(BUCKETS);
+
+        long get(int index) {
+            AtomicLongArray bucket = buckets.get(bucket(index));
+            return bucket == null ? 0 : bucket.get(offsetInBucket(index));
+        }
+
+        void set(int index, long value) {
+            int b = bucket(index);
+            AtomicLongArray bucket = buckets.get(b);
+            if (bucket == null) {
+                buckets.compareAndSet(b, null, new AtomicLongArray(FIRST_BUCKET_SIZE << b));
+                bucket = buckets.get(b);
+            }
+            bucket.set(offsetInBucket(index), value);
+        }
+    }
+
+    private static final class PageVector {
+        private final AtomicReferenceArray<AtomicReferenceArray<byte[]>> buckets = new AtomicReferenceArray<>(BUCKETS);
+
+        byte[] get(int index) {
+            AtomicReferenceArray<byte[]> bucket = buckets.get(bucket(index));
+            return bucket == null ? null : bucket.get(offsetInBucket(index));
+        }
+
+        /*
+         * returns the page at index, which is `page` unless another thread was first
+         */
+        byte[] setIfAbsent(int index, byte[] page) {
+            int b = bucket(index);
+            AtomicReferenceArray<byte[]> bucket = buckets.get(b);
+            if (bucket == null) {
+                buckets.compareAndSet(b, null, new AtomicReferenceArray<>(FIRST_BUCKET_SIZE << b));
+                bucket = buckets.get(b);
+            }
+            bucket.compareAndSet(offsetInBucket(index), null, page);
+            return bucket.get(offsetInBucket(index));
+        }
+    }
+}
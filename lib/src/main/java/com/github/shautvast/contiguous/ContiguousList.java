@@ -1,13 +1,27 @@
 package com.github.shautvast.contiguous;
 
+import com.github.shautvast.contiguous.asm.ElementCodec;
+import com.github.shautvast.contiguous.asm.ElementCodecGenerator;
+import com.github.shautvast.contiguous.asm.LazyElementGenerator;
 import com.github.shautvast.reflective.MetaClass;
 import com.github.shautvast.reflective.MetaMethod;
 import com.github.shautvast.reflective.Reflective;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationTargetException;
 import java.nio.ByteBuffer;
-import java.nio.charset.StandardCharsets;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 //notes:
 // should find out growth factor of arraylist
@@ -35,8 +49,21 @@ import java.util.*;
  * <p>
  * Like ArrayList, mutating operations are not synchronized.
  * <p>
+ * Reading does not change the list: every thread, iterator and view reads through its own cursor over the data,
+ * so once no more elements are added, any number of threads can read the list (get, iterators, streams,
+ * property accessors, json) without locking.
+ * <p>
  * Does not allow null elements.
  * <p>
+ * By default the data is kept on the heap. Pass {@link Storage#OFF_HEAP} to the constructor to keep it outside
+ * the heap. In that case the list must be closed to free the memory.
+ * <p>
+ * By default all values of an element are stored next to each other ({@link Layout#ROW}). With {@link Layout#COLUMNAR}
+ * every property gets its own buffer, so that reading a single property for all elements
+ * (see {@link #propertyIterator(String)}) only touches the bytes of that property.
+ * For element types with only fixed size number properties {@link Layout#FIXED_WIDTH} stores every element in the
+ * same nr of bytes, so that every value can be found without decoding anything.
+ * <p>
  * Implements java.util.List but some methods are not (yet) implemented mainly because they don't make much sense
  * performance-wise, like the indexed add and set methods. They mess with the memory layout. The list is meant to
  * be appended at the tail.
@@ -46,37 +73,1112 @@ import java.util.*;
  * and directly map the results to JSON. Both writing and reading should ideally be faster
  * than doing it the regular way.
  */
-public class ContiguousList<E> extends NotImplementedList<E> implements List<E> {
+public class ContiguousList<E> extends NotImplementedList<E> implements List<E>, AutoCloseable {
 
-    private static final byte[] DOUBLE_TYPE = {7};
-    private static final byte[] FLOAT_TYPE = {10}; // not in line with SQLite anymore
-    private static final int STRING_OFFSET = 13;
-    private static final int BYTES_OFFSET = 12; // blob TODO decide if include
     public static final int MAX_24BITS = 8388607;
     public static final long MAX_48BITS = 140737488355327L;
 
+    private static final int INITIAL_CAPACITY = 4096;
+    private static final int MIN_SEGMENT_SIZE = 4096; // smaller collections are not worth the threads
+
+    private final Storage storage;
+
     /*
-     * storage for dehydated objects
+     * storage for dehydated objects (row layout)
      */
-    private ByteBuffer data = BufferCache.get(4096);
+    private final DataBuffer data;
+
+    private final IntList elementIndices; // offset of every element in data, avoids autoboxing
 
-    private int bufferPosition;
+    private final Layout layout;
 
-    private final ArrayList<Integer> elementIndices = new ArrayList<>(); // avoids autoboxing. Could also use standard ArrayList though
-    // is there a standard lib IntList??
+    /*
+     * fixed width layout: element i starts at i * stride, leaf k at fieldOffsets[k] from there
+     */
+    private final int stride;
+    private final int[] fieldOffsets;
+    private final int[] fieldWidths;
+
+    /*
+     * optional for the row layout: the offsets of leaf 1..n of every element (leaf 0 is in elementIndices)
+     * like the record header in SQLite, but in a side table
+     */
+    private IntList fieldOffsetTable;
+
+    /*
+     * columnar layout: a buffer per leaf property, with the offset of the value for every element
+     */
+    private final DataBuffer[] columns;
+    private final IntList[] columnIndices;
+    private int currentColumn; // the column (or fixed width field) that the next store goes to
 
     private int size;
 
     private final TypeHandler rootHandler;
-    private static final Map<Class<?>, TypeHandler> TYPE_HANDLERS = new HashMap<>();
+    private final List<BuiltinTypeHandler<?>> leaves = new ArrayList<>(); // the stored properties, in order
+    private final List<String> leafPaths = new ArrayList<>();
+    private static final Map<Class<?>, TypeHandler> TYPE_HANDLERS = new ConcurrentHashMap<>();
+
+    // generated (de)serializer per element class, or empty when reflection must be used
+    private static final Map<Class<?>, Optional<ElementCodec<?>>> CODECS = new ConcurrentHashMap<>();
+    private static final Set<Class<?>> STANDARD_HANDLERS = new HashSet<>(Arrays.asList(StringHandler.class,
+            LongHandler.class, IntegerHandler.class, ShortHandler.class, ByteHandler.class, DoubleHandler.class,
+            FloatHandler.class, BigDecimalHandler.class, BigIntegerHandler.class));
+    private final ElementCodec<E> codec;
+
+    // constructors of the generated lazy subclasses per element class, or empty when the class can't be subclassed
+    private static final Map<Class<?>, Optional<MethodHandle>> LAZY_ELEMENTS = new ConcurrentHashMap<>();
+    private MethodHandle lazyElementConstructor; // set when lazy elements are enabled
+    private JsonWriter jsonWriter; // created on first use
+    private StringDictionary[] dictionaries; // per leaf, null if none of the properties is dictionary encoded
+    private HashIndex[] hashIndexes; // per leaf, null if there are none
+    private RangeIndex[] rangeIndexes; // idem
+    private ContiguousList<E> encoder; // to encode the values that are looked up, created on first use
 
     public ContiguousList(Class<E> type) {
+        this(type, Storage.HEAP, Layout.ROW);
+    }
+
+    /**
+     * @param type    the element type
+     * @param storage where to keep the data, for instance {@link Storage#OFF_HEAP}
+     */
+    public ContiguousList(Class<E> type, Storage storage) {
+        this(type, storage, Layout.ROW);
+    }
+
+    /**
+     * @param type   the element type
+     * @param layout how to store the elements, for instance {@link Layout#COLUMNAR}
+     */
+    public ContiguousList(Class<E> type, Layout layout) {
+        this(type, Storage.HEAP, layout);
+    }
+
+    /**
+     * @param type    the element type
+     * @param storage where to keep the data, for instance {@link Storage#OFF_HEAP}
+     * @param layout  how to store the elements, for instance {@link Layout#COLUMNAR}
+     */
+    public ContiguousList(Class<E> type, Storage storage, Layout layout) {
+        this(type, storage, layout, new IntList());
+        if (layout == Layout.ROW) {
+            elementIndices.add(0); // index of first element
+        }
+    }
+
+    /*
+     * for MappedContiguousList, that keeps the element offsets in a file. It restores them itself
+     */
+    ContiguousList(Class<E> type, Storage storage, Layout layout, IntList elementIndices) {
         this.rootHandler = inspectType(type);
-        elementIndices.add(0); // index of first element
+        this.elementIndices = elementIndices;
+        this.storage = storage;
+        this.layout = layout;
+        getStoredTypes(rootHandler, "", leaves, leafPaths);
+        this.codec = getCodec(type);
+        if (layout == Layout.FIXED_WIDTH) {
+            if (storage instanceof PagedStorage) {
+                throw new IllegalArgumentException("Paged storage is not possible for the fixed width layout");
+            }
+            this.fieldOffsets = new int[leaves.size()];
+            this.fieldWidths = new int[leaves.size()];
+            int offset = 0;
+            for (int i = 0; i < leaves.size(); i++) {
+                int width = leaves.get(i).getFixedWidth();
+                if (width < 0) {
+                    throw new IllegalArgumentException("Property " + leafPaths.get(i) + " of type "
+                            + leaves.get(i).getType().getName() + " does not have a fixed width");
+                }
+                fieldOffsets[i] = offset;
+                fieldWidths[i] = width;
+                offset += width;
+            }
+            this.stride = offset;
+        } else {
+            this.fieldOffsets = null;
+            this.fieldWidths = null;
+            this.stride = 0;
+        }
+        if (layout == Layout.COLUMNAR) {
+            this.data = null;
+            this.columns = new DataBuffer[leaves.size()];
+            this.columnIndices = new IntList[leaves.size()];
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = new DataBuffer(storage, INITIAL_CAPACITY);
+                columnIndices[i] = new IntList();
+                columnIndices[i].add(0);
+            }
+        } else {
+            this.data = new DataBuffer(storage, INITIAL_CAPACITY);
+            this.columns = null;
+            this.columnIndices = null;
+        }
     }
 
+    /**
+     * Hands the data buffer(s) back to the {@link Storage}. For off-heap storage this frees the memory.
+     * <p>
+     * The list must not be used after it is closed. Calling close more than once has no effect.
+     */
+    @Override
     public void close() {
-        BufferCache.release(this.data);
+        if (encoder != null) {
+            encoder.close();
+        }
+        if (columns == null) {
+            data.release();
+        } else {
+            for (DataBuffer column : columns) {
+                column.release();
+            }
+        }
+    }
+
+    /*
+     * Generates the codec for the element type once. Not for builtin types (nothing to gain there)
+     * and not when there are custom type handlers, as those may do anything in their setValue.
+     */
+    @SuppressWarnings("unchecked")
+    private ElementCodec<E> getCodec(Class<E> type) {
+        if (!hasStandardHandlersOnly()) {
+            return null;
+        }
+        return (ElementCodec<E>) CODECS.computeIfAbsent(type, k ->
+                        ElementCodecGenerator.generate(MethodHandles.lookup(), type, leafPaths)
+                                .map(codec -> (ElementCodec<?>) codec))
+                .orElse(null);
+    }
+
+    private boolean hasStandardHandlersOnly() {
+        if (!(rootHandler instanceof CompoundTypeHandler)) {
+            return false;
+        }
+        for (BuiltinTypeHandler<?> leaf : leaves) {
+            if (!STANDARD_HANDLERS.contains(leaf.getClass())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * From now on {@link #get(int)} returns instances of a generated subclass of the element type, whose getters
+     * read the property value from the list when they are first called. Useful for wide beans, of which only a few
+     * properties are used. Public methods other than the getters and setters (equals, hashCode, toString...)
+     * read all values first.
+     * <p>
+     * The elements are only valid as long as the list is not cleared, sorted or closed.
+     *
+     * @throws IllegalStateException if the element type can not be subclassed, for instance because it is final,
+     *                               not public, or has properties with custom type handlers
+     */
+    public void enableLazyElements() {
+        if (lazyElementConstructor != null) {
+            return;
+        }
+        if (!hasStandardHandlersOnly()) {
+            throw new IllegalStateException("Lazy elements are not possible for " + rootHandler.getType().getName());
+        }
+        Class<?> type = rootHandler.getType();
+        lazyElementConstructor = LAZY_ELEMENTS.computeIfAbsent(type, k ->
+                        LazyElementGenerator.generate(MethodHandles.lookup(), type, leafPaths)
+                                .map(ContiguousList::findLazyElementConstructor))
+                .orElseThrow(() -> new IllegalStateException("Lazy elements are not possible for " + type.getName()));
+    }
+
+    private static MethodHandle findLazyElementConstructor(Class<?> lazyElementType) {
+        try {
+            return MethodHandles.lookup().findConstructor(lazyElementType,
+                            MethodType.methodType(void.class, ContiguousList.class, int.class))
+                    .asType(MethodType.methodType(Object.class, ContiguousList.class, int.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Stores the values of a String property as a code into a dictionary of its distinct values, instead of storing
+     * the UTF-8 bytes of every value. Saves memory for properties that have only a few distinct values, like
+     * a country, and {@link #writeJson(OutputStream)} copies those values as they are already encoded in JSON.
+     * <p>
+     * The dictionary keeps every distinct value that was ever added, so it's not meant for properties that have many.
+     * Must be called before any element is added. Not for a {@link MappedContiguousList}, as the dictionary would not
+     * be in the file.
+     *
+     * @param propertyPath the property, for instance "address.city"
+     * @throws IllegalArgumentException      if there is no such property or if it's not a String
+     * @throws IllegalStateException         if the list is not empty
+     * @throws UnsupportedOperationException for a {@link MappedContiguousList}
+     */
+    public void enableDictionary(String propertyPath) {
+        int leaf = getLeafIndex(propertyPath);
+        if (!(leaves.get(leaf) instanceof StringHandler)) {
+            throw new IllegalArgumentException("Property " + propertyPath + " is not a String");
+        }
+        if (size > 0) {
+            throw new IllegalStateException("A dictionary can only be enabled for an empty list");
+        }
+        if (dictionaries == null) {
+            dictionaries = new StringDictionary[leaves.size()];
+        }
+        if (dictionaries[leaf] == null) {
+            dictionaries[leaf] = new StringDictionary();
+        }
+    }
+
+    /**
+     * Compresses the data that is no longer added to, for lists that are kept around but are rarely read.
+     * <p>
+     * Only for paged storage (see {@link Storage#paged(Storage, int)}): all pages that are full are compressed,
+     * with an LZ4 style codec, and their buffers are handed back to the storage. Reading from a compressed page
+     * decompresses it, the most recently read pages are kept decompressed, at most cachedPages of them (per column
+     * in the columnar layout).
+     * <p>
+     * Elements can still be added. Call compress again to also compress the pages that were filled in the meantime.
+     *
+     * @param cachedPages the number of pages to keep decompressed, at least 1
+     * @throws IllegalStateException if the storage is not paged
+     */
+    public void compress(int cachedPages) {
+        if (!(storage instanceof PagedStorage)) {
+            throw new IllegalStateException("Only paged storage can be compressed");
+        }
+        if (cachedPages < 1) {
+            throw new IllegalArgumentException("At least one page must be cached");
+        }
+        if (columns == null) {
+            data.compress(cachedPages);
+        } else {
+            for (DataBuffer column : columns) {
+                column.compress(cachedPages);
+            }
+        }
+    }
+
+    /**
+     * Sorts the elements on the value of a property, in ascending order. See {@link #sortBy(SortKey...)}.
+     *
+     * @param propertyPath the property, for instance "address.city"
+     */
+    public void sortBy(String propertyPath) {
+        sortBy(SortKey.ascending(propertyPath));
+    }
+
+    /**
+     * Sorts the elements on the value of a property. See {@link #sortBy(SortKey...)}.
+     *
+     * @param propertyPath the property, for instance "address.city"
+     * @param descending   true for the largest value first
+     */
+    public void sortBy(String propertyPath, boolean descending) {
+        sortBy(descending ? SortKey.descending(propertyPath) : SortKey.ascending(propertyPath));
+    }
+
+    /**
+     * Sorts the elements on the values of one or more properties: on the first key, elements with the same value
+     * for that on the second, and so on. The sort is stable. Nulls come first, also for a descending key.
+     * Strings are ordered by code point, dictionary encoded ones too.
+     * <p>
+     * The values are compared as they are stored, without creating the elements. Only the element offsets are put
+     * in the new order, the data itself stays where it is (except in the {@link Layout#FIXED_WIDTH} layout, that has
+     * no offsets). So reading the sorted list front to back jumps around in the data, see {@link #compact()}.
+     * <p>
+     * Lazy elements (see {@link #enableLazyElements()}) and {@link ElementView}s read the element at their index,
+     * which after sorting is another one. Like after clear, they must not be used anymore.
+     *
+     * @param keys the properties to sort on
+     * @throws IllegalArgumentException if there is no such property or if it's not a number or String
+     */
+    public void sortBy(SortKey... keys) {
+        int[] order = new ElementSorter(this, keys).sort(size);
+        resetIndexes();
+        if (layout == Layout.ROW) {
+            elementIndices.permute(order, 1);
+            if (fieldOffsetTable != null) {
+                fieldOffsetTable.permute(order, leaves.size() - 1);
+            }
+        } else if (layout == Layout.COLUMNAR) {
+            for (IntList indices : columnIndices) {
+                indices.permute(order, 1);
+            }
+        } else {
+            ByteBuffer source = ByteBuffer.wrap(data.getData());
+            data.reset();
+            for (int index : order) {
+                data.appendElement(source, index * stride, (index + 1) * stride);
+            }
+            data.startElement();
+        }
+    }
+
+    /**
+     * Rewrites the data in the order of the elements, so that after {@link #sortBy(SortKey...)} reading the list
+     * front to back reads the data front to back again. Copies all data once.
+     * Has no effect in the {@link Layout#FIXED_WIDTH} layout, where the data is always in order.
+     */
+    public void compact() {
+        if (layout == Layout.ROW) {
+            compact(data, elementIndices, 0, leaves.size());
+        } else if (layout == Layout.COLUMNAR) {
+            for (int column = 0; column < columns.length; column++) {
+                compact(columns[column], columnIndices[column], column, 1);
+            }
+        }
+    }
+
+    /*
+     * rewrites a buffer in the order of its index, that has valueCount values per element, starting at leaf
+     */
+    private void compact(DataBuffer buffer, IntList indices, int leaf, int valueCount) {
+        Cursor cursor = new Cursor();
+        int[] starts = new int[size];
+        int[] lengths = new int[size];
+        for (int i = 0; i < size; i++) {
+            starts[i] = indices.get(i);
+            ByteBuffer values = cursor.seek(i, leaf);
+            int position = values.position();
+            for (int value = 0; value < valueCount; value++) {
+                ValueReader.skip(values);
+            }
+            lengths[i] = values.position() - position;
+        }
+        ByteBuffer source = ByteBuffer.wrap(buffer.getData());
+        buffer.reset();
+        indices.clear();
+        int fieldsPerElement = leaves.size() - 1;
+        for (int i = 0; i < size; i++) {
+            int address = buffer.appendElement(source, starts[i], starts[i] + lengths[i]);
+            indices.add(address);
+            if (buffer == data && fieldOffsetTable != null) {
+                for (int field = i * fieldsPerElement; field < (i + 1) * fieldsPerElement; field++) {
+                    fieldOffsetTable.set(field, fieldOffsetTable.get(field) - starts[i] + address);
+                }
+            }
+        }
+        indices.add(buffer.getPosition());
+        buffer.startElement();
+    }
+
+    /**
+     * Keeps a hash index of the values of a property, so that looking up a value with {@link #indexOf(String, Object)},
+     * {@link #lastIndexOf(String, Object)} or {@link #contains(String, Object)} takes constant time instead of
+     * a scan. {@link #indexOf(Object)} and {@link #contains(Object)} use it as well, to find the candidates
+     * for the element.
+     * <p>
+     * The values are indexed as they are stored, so a lookup does not decode anything. Elements that are added
+     * later are indexed the next time the index is used. Costs 4 bytes per element, and 24 per distinct value.
+     *
+     * @param propertyPath the property, for instance "email"
+     * @throws IllegalArgumentException if there is no such property
+     */
+    public void enableHashIndex(String propertyPath) {
+        int leaf = getLeafIndex(propertyPath);
+        if (hashIndexes == null) {
+            hashIndexes = new HashIndex[leaves.size()];
+        }
+        if (hashIndexes[leaf] == null) {
+            hashIndexes[leaf] = new HashIndex(this, leaf);
+        }
+    }
+
+    /**
+     * Finds the first element that has a value for a property. Uses the hash index, if there is one for the property
+     * (see {@link #enableHashIndex(String)}), otherwise the stored values are compared one by one, without
+     * decoding them.
+     *
+     * @param propertyPath the property, for instance "email"
+     * @param value        the value, of the type of the property, or null. For a number property any number will do,
+     *                     it is converted to the type of the property
+     * @return the index of the element, or -1 if there is none
+     * @throws IllegalArgumentException if there is no such property or the value is not of the type of the property
+     */
+    public int indexOf(String propertyPath, Object value) {
+        int leaf = getLeafIndex(propertyPath);
+        byte[] encoded = encodeValue(leaf, value);
+        if (encoded == null) {
+            return -1;
+        }
+        if (hashIndexes != null && hashIndexes[leaf] != null) {
+            return hashIndexes[leaf].first(encoded);
+        }
+        Cursor cursor = cursor();
+        for (int i = 0; i < size; i++) {
+            if (valueEquals(cursor.seek(i, leaf), encoded)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the last element that has a value for a property, see {@link #indexOf(String, Object)}.
+     *
+     * @param propertyPath the property, for instance "email"
+     * @param value        the value, of the type of the property, or null
+     * @return the index of the element, or -1 if there is none
+     * @throws IllegalArgumentException if there is no such property or the value is not of the type of the property
+     */
+    public int lastIndexOf(String propertyPath, Object value) {
+        int leaf = getLeafIndex(propertyPath);
+        byte[] encoded = encodeValue(leaf, value);
+        if (encoded == null) {
+            return -1;
+        }
+        if (hashIndexes != null && hashIndexes[leaf] != null) {
+            return hashIndexes[leaf].last(encoded);
+        }
+        Cursor cursor = cursor();
+        for (int i = size - 1; i >= 0; i--) {
+            if (valueEquals(cursor.seek(i, leaf), encoded)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param propertyPath the property, for instance "email"
+     * @param value        the value, of the type of the property, or null
+     * @return true if an element has the value for the property, see {@link #indexOf(String, Object)}
+     * @throws IllegalArgumentException if there is no such property or the value is not of the type of the property
+     */
+    public boolean contains(String propertyPath, Object value) {
+        return indexOf(propertyPath, value) != -1;
+    }
+
+    /**
+     * Compares the stored values with those of the element, without creating the elements. With a hash index
+     * (see {@link #enableHashIndex(String)}) only the elements that have the same value for the indexed
+     * property are compared.
+     * <p>
+     * Elements are equal when all their stored values are, regardless of their equals method.
+     */
+    @Override
+    public int indexOf(Object o) {
+        byte[][] values = encodeElement(o);
+        if (values == null) {
+            return -1;
+        }
+        Cursor cursor = cursor();
+        HashIndex index = getHashIndex();
+        if (index != null) {
+            for (int i = index.first(values[index.getLeaf()]); i != -1; i = index.next(i)) {
+                if (elementEquals(cursor, i, values)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        for (int i = 0; i < size; i++) {
+            if (elementEquals(cursor, i, values)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Compares the stored values with those of the element, see {@link #indexOf(Object)}.
+     */
+    @Override
+    public int lastIndexOf(Object o) {
+        byte[][] values = encodeElement(o);
+        if (values == null) {
+            return -1;
+        }
+        Cursor cursor = cursor();
+        HashIndex index = getHashIndex();
+        if (index != null) {
+            int last = -1;
+            for (int i = index.first(values[index.getLeaf()]); i != -1; i = index.next(i)) {
+                if (elementEquals(cursor, i, values)) {
+                    last = i;
+                }
+            }
+            return last;
+        }
+        for (int i = size - 1; i >= 0; i--) {
+            if (elementEquals(cursor, i, values)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Compares the stored values with those of the element, see {@link #indexOf(Object)}.
+     */
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) != -1;
+    }
+
+    @Override
+    public boolean containsAll(Collection<?> collection) {
+        for (Object element : collection) {
+            if (!contains(element)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private HashIndex getHashIndex() {
+        if (hashIndexes != null) {
+            for (HashIndex index : hashIndexes) {
+                if (index != null) {
+                    return index;
+                }
+            }
+        }
+        return null;
+    }
+
+    /*
+     * for when the elements change places
+     */
+    private void resetIndexes() {
+        if (hashIndexes != null) {
+            for (HashIndex index : hashIndexes) {
+                if (index != null) {
+                    index.reset();
+                }
+            }
+        }
+        if (rangeIndexes != null) {
+            for (RangeIndex index : rangeIndexes) {
+                if (index != null) {
+                    index.reset();
+                }
+            }
+        }
+    }
+
+    /*
+     * The bytes that this list stores the value as, for leaf. Null if no element can have the value, because it's not
+     * in the dictionary.
+     */
+    byte[] encodeValue(int leaf, Object value) {
+        ContiguousList<E> encoder = getEncoder();
+        synchronized (encoder) {
+            return encodeValue(encoder, leaf, value);
+        }
+    }
+
+    private byte[] encodeValue(ContiguousList<E> encoder, int leaf, Object value) {
+        BuiltinTypeHandler<?> handler = leaves.get(leaf);
+        if (value != null && !handler.getType().isInstance(value)) {
+            value = convert(handler, leaf, value);
+            if (value == null) {
+                return null;
+            }
+        }
+        encoder.clear();
+        encoder.currentColumn = leaf; // for the width in the fixed width layout
+        StringDictionary dictionary = getDictionary(leaf);
+        if (dictionary != null && value != null) {
+            int code = dictionary.getCode((String) value);
+            if (code == -1) {
+                return null;
+            }
+            encoder.storeLongValue(code);
+        } else {
+            encoder.storeLeaf(leaf, value);
+        }
+        return encoder.data.getData();
+    }
+
+    /*
+     * A number as the type of the number property, because every type is stored differently.
+     * Null if no element can have it, because it's out of the range of the type or not a whole number.
+     */
+    private Object convert(BuiltinTypeHandler<?> handler, int leaf, Object value) {
+        if (value instanceof Number && isIntegerNumber(handler)) {
+            long number = ((Number) value).longValue();
+            if (!(value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte)) {
+                double d = ((Number) value).doubleValue();
+                if (number != d || d >= 0x1p63) {
+                    return null; // (long) saturates
+                }
+            }
+            if (handler instanceof LongHandler) {
+                return number;
+            } else if (handler instanceof IntegerHandler) {
+                return (int) number == number ? (Object) (int) number : null;
+            } else if (handler instanceof ShortHandler) {
+                return (short) number == number ? (Object) (short) number : null;
+            } else {
+                return (byte) number == number ? (Object) (byte) number : null;
+            }
+        }
+        if (value instanceof Number && handler instanceof DoubleHandler) {
+            return ((Number) value).doubleValue();
+        }
+        if (value instanceof Number && handler instanceof FloatHandler) {
+            return ((Number) value).floatValue();
+        }
+        throw new IllegalArgumentException("Property " + leafPaths.get(leaf) + " of type "
+                + handler.getType().getName() + " can not have value " + value);
+    }
+
+    /*
+     * the encoded values of every leaf, or null if no element can be equal
+     */
+    @SuppressWarnings("unchecked")
+    private byte[][] encodeElement(Object element) {
+        if (!rootHandler.getType().isInstance(element)) {
+            return null;
+        }
+        ContiguousList<E> encoder = getEncoder();
+        synchronized (encoder) {
+            encoder.clear();
+            encoder.add((E) element);
+            Object[] values = new Object[leaves.size()];
+            for (int leaf = 0; leaf < values.length; leaf++) {
+                values[leaf] = encoder.readLeaf(encoder.seek(0, leaf), leaf);
+            }
+            byte[][] encoded = new byte[values.length][];
+            for (int leaf = 0; leaf < values.length; leaf++) {
+                encoded[leaf] = encodeValue(encoder, leaf, values[leaf]);
+                if (encoded[leaf] == null) {
+                    return null;
+                }
+            }
+            return encoded;
+        }
+    }
+
+    /*
+     * One encoder per list, not per thread (see cursor()). Lookups are short, so they take turns using it.
+     */
+    @SuppressWarnings("unchecked")
+    private synchronized ContiguousList<E> getEncoder() {
+        if (encoder == null) {
+            encoder = new ContiguousList<>((Class<E>) rootHandler.getType(), Storage.HEAP,
+                    layout == Layout.FIXED_WIDTH ? layout : Layout.ROW);
+        }
+        return encoder;
+    }
+
+    private boolean elementEquals(Cursor cursor, int index, byte[][] values) {
+        for (int leaf = 0; leaf < values.length; leaf++) {
+            if (!valueEquals(cursor.seek(index, leaf), values[leaf])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * The type comes first, so if all bytes of the value are the same, so is the length.
+     */
+    static boolean valueEquals(ByteBuffer buffer, byte[] value) {
+        int position = buffer.position();
+        if (buffer.limit() - position < value.length) {
+            return false;
+        }
+        for (int i = 0; i < value.length; i++) {
+            if (buffer.get(position + i) != value[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * the nr of bytes of the value at the position of the buffer, which does not move
+     */
+    int valueLength(ByteBuffer buffer, int leaf) {
+        if (layout == Layout.FIXED_WIDTH) {
+            return fieldWidths[leaf]; // also for null
+        }
+        int position = buffer.position();
+        ValueReader.skip(buffer);
+        int length = buffer.position() - position;
+        buffer.position(position);
+        return length;
+    }
+
+    /**
+     * Keeps a sorted index of the values of a number property, for {@link #rangeScan(String, long, long)}.
+     * Elements that are added later are indexed the next time the index is used. Costs 12 bytes per element.
+     * <p>
+     * Not needed before the first scan, that creates the index when there is none.
+     *
+     * @param propertyPath the property, for instance "address.housenumber"
+     * @throws IllegalArgumentException if there is no such property or if it's not a (primitive or boxed) number
+     */
+    public void enableRangeIndex(String propertyPath) {
+        getRangeIndex(getLeafIndex(propertyPath));
+    }
+
+    /**
+     * Finds the elements with a value for a number property from lo up to and including hi, using a sorted index
+     * (see {@link #enableRangeIndex(String)}), so in logarithmic time. Elements where the value is null are not
+     * included.
+     *
+     * @param propertyPath the property, for instance "address.housenumber"
+     * @param lo           the lowest value
+     * @param hi           the highest value
+     * @return the indices of the elements, ordered by the value (and by index for equal values)
+     * @throws IllegalArgumentException if there is no such property or if it's not a (primitive or boxed) number
+     */
+    public int[] rangeScan(String propertyPath, long lo, long hi) {
+        RangeIndex index = getRangeIndex(getLeafIndex(propertyPath));
+        if (index.isFloatingPoint()) {
+            return rangeScan(index, lo, hi);
+        }
+        return index.scan(lo, hi);
+    }
+
+    /**
+     * Finds the elements with a value for a number property from lo up to and including hi, see
+     * {@link #rangeScan(String, long, long)}. Values are compared as {@link Double#compare(double, double)} does.
+     * For an integer property a NaN bound matches nothing.
+     *
+     * @param propertyPath the property, for instance "temperature"
+     * @param lo           the lowest value
+     * @param hi           the highest value
+     * @return the indices of the elements, ordered by the value (and by index for equal values)
+     * @throws IllegalArgumentException if there is no such property or if it's not a (primitive or boxed) number
+     */
+    public int[] rangeScan(String propertyPath, double lo, double hi) {
+        return rangeScan(getRangeIndex(getLeafIndex(propertyPath)), lo, hi);
+    }
+
+    private static int[] rangeScan(RangeIndex index, double lo, double hi) {
+        if (index.isFloatingPoint()) {
+            return index.scan(ElementSorter.sortableBits(lo), ElementSorter.sortableBits(hi));
+        }
+        if (Double.isNaN(lo) || Double.isNaN(hi)) {
+            return new int[0]; // casting would make it 0
+        }
+        // the whole numbers in the range, Math.ceil and floor saturate at the long range
+        return index.scan((long) Math.ceil(lo), (long) Math.floor(hi));
+    }
+
+    private synchronized RangeIndex getRangeIndex(int leaf) {
+        if (rangeIndexes == null) {
+            rangeIndexes = new RangeIndex[leaves.size()];
+        }
+        if (rangeIndexes[leaf] == null) {
+            BuiltinTypeHandler<?> handler = leaves.get(leaf);
+            boolean floatingPoint = handler instanceof DoubleHandler || handler instanceof FloatHandler;
+            if (!floatingPoint && !isIntegerNumber(handler)) {
+                throw new IllegalArgumentException("Property " + leafPaths.get(leaf) + " of type "
+                        + handler.getType().getName() + " is not a number");
+            }
+            rangeIndexes[leaf] = new RangeIndex(this, leaf, floatingPoint);
+        }
+        return rangeIndexes[leaf];
+    }
+
+    /**
+     * Adds up the values of an integer number property, skipping nulls. Reads the stored values, without creating
+     * the elements and without boxing. Overflows silently, like {@link java.util.stream.LongStream#sum()}.
+     *
+     * @param propertyPath the property, for instance "address.housenumber"
+     * @return the sum, 0 if all values are null
+     * @throws IllegalArgumentException if there is no such property or if it's not a (primitive or boxed) byte,
+     *                                  short, int or long
+     */
+    public long sumLong(String propertyPath) {
+        return longStatistics(propertyPath).getSum();
+    }
+
+    /**
+     * Adds up the values of a number property, skipping nulls. See {@link #sumLong(String)}.
+     *
+     * @param propertyPath the property, for instance "amount"
+     * @return the sum, 0 if all values are null
+     * @throws IllegalArgumentException if there is no such property or if it's not a (primitive or boxed) number
+     */
+    public double sumDouble(String propertyPath) {
+        return doubleStatistics(propertyPath).getSum();
+    }
+
+    /**
+     * The lowest value of a number property, skipping nulls. See {@link #sumLong(String)}.
+     *
+     * @param propertyPath the property, for instance "temperature"
+     * @return the lowest value, NaN if all values are null
+     * @throws IllegalArgumentException if there is no such property or if it's not a (primitive or boxed) number
+     */
+    public double minDouble(String propertyPath) {
+        DoubleSummaryStatistics statistics = doubleStatistics(propertyPath);
+        return statistics.getCount() == 0 ? Double.NaN : statistics.getMin();
+    }
+
+    /**
+     * The highest value of a number property, skipping nulls. See {@link #sumLong(String)}.
+     *
+     * @param propertyPath the property, for instance "temperature"
+     * @return the highest value, NaN if all values are null
+     * @throws IllegalArgumentException if there is no such property or if it's not a (primitive or boxed) number
+     */
+    public double maxDouble(String propertyPath) {
+        DoubleSummaryStatistics statistics = doubleStatistics(propertyPath);
+        return statistics.getCount() == 0 ? Double.NaN : statistics.getMax();
+    }
+
+    /**
+     * The average of the values of a number property, skipping nulls. See {@link #sumLong(String)}.
+     *
+     * @param propertyPath the property, for instance "temperature"
+     * @return the average, NaN if all values are null
+     * @throws IllegalArgumentException if there is no such property or if it's not a (primitive or boxed) number
+     */
+    public double avg(String propertyPath) {
+        DoubleSummaryStatistics statistics = doubleStatistics(propertyPath);
+        return statistics.getCount() == 0 ? Double.NaN : statistics.getAverage();
+    }
+
+    /**
+     * Counts the elements where a property is not null, without creating them.
+     *
+     * @param propertyPath the property, for instance "address.city"
+     * @return the count
+     * @throws IllegalArgumentException if there is no such property
+     */
+    public int countNonNull(String propertyPath) {
+        int leaf = getLeafIndex(propertyPath);
+        int count = 0;
+        if (layout == Layout.FIXED_WIDTH) {
+            ByteBuffer buffer = data.getBuffer();
+            for (int i = 0, position = fieldOffsets[leaf]; i < size; i++, position += stride) {
+                if (buffer.get(position) != 0) {
+                    count++;
+                }
+            }
+        } else if (layout == Layout.COLUMNAR && !columns[leaf].isPaged()) {
+            ByteBuffer buffer = columnValues(leaf);
+            for (int i = 0; i < size; i++) {
+                if (!ValueReader.isNull(buffer)) {
+                    count++;
+                }
+                ValueReader.skip(buffer);
+            }
+        } else {
+            Cursor cursor = cursor();
+            for (int i = 0; i < size; i++) {
+                if (!ValueReader.isNull(cursor.seek(i, leaf))) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /*
+     * The aggregations walk the values in one loop per layout: the fixed width layout reads every value at
+     * its known offset with an absolute get, a (non paged) column is decoded front to back without looking up
+     * the offsets. Only the row layout needs to seek every element. The order of the values doesn't matter,
+     * so a sorted column is read in the order of the data as well.
+     */
+    private LongSummaryStatistics longStatistics(String propertyPath) {
+        int leaf = getLeafIndex(propertyPath);
+        if (!isIntegerNumber(leaves.get(leaf))) {
+            throw new IllegalArgumentException("Property " + propertyPath + " is not an integer number");
+        }
+        LongSummaryStatistics statistics = new LongSummaryStatistics();
+        if (layout == Layout.FIXED_WIDTH) {
+            ByteBuffer buffer = data.getBuffer();
+            int width = fieldWidths[leaf];
+            for (int i = 0, position = fieldOffsets[leaf]; i < size; i++, position += stride) {
+                if (buffer.get(position) != 0) {
+                    statistics.accept(getFixedLong(buffer, position, width));
+                }
+            }
+        } else if (layout == Layout.COLUMNAR && !columns[leaf].isPaged()) {
+            ByteBuffer buffer = columnValues(leaf);
+            for (int i = 0; i < size; i++) {
+                if (ValueReader.isNull(buffer)) {
+                    buffer.position(buffer.position() + 1);
+                } else {
+                    statistics.accept(ValueReader.readLong(buffer));
+                }
+            }
+        } else {
+            Cursor cursor = cursor();
+            for (int i = 0; i < size; i++) {
+                ByteBuffer buffer = cursor.seek(i, leaf);
+                if (!ValueReader.isNull(buffer)) {
+                    statistics.accept(ValueReader.readLong(buffer));
+                }
+            }
+        }
+        return statistics;
+    }
+
+    private DoubleSummaryStatistics doubleStatistics(String propertyPath) {
+        int leaf = getLeafIndex(propertyPath);
+        BuiltinTypeHandler<?> handler = leaves.get(leaf);
+        if (!isIntegerNumber(handler) && !(handler instanceof DoubleHandler || handler instanceof FloatHandler)) {
+            throw new IllegalArgumentException("Property " + propertyPath + " is not a number");
+        }
+        DoubleSummaryStatistics statistics = new DoubleSummaryStatistics();
+        if (layout == Layout.FIXED_WIDTH) {
+            ByteBuffer buffer = data.getBuffer();
+            int width = fieldWidths[leaf];
+            for (int i = 0, position = fieldOffsets[leaf]; i < size; i++, position += stride) {
+                byte type = buffer.get(position);
+                if (type == DataBuffer.DOUBLE_TYPE) {
+                    statistics.accept(buffer.getDouble(position + 1));
+                } else if (type == DataBuffer.FLOAT_TYPE) {
+                    statistics.accept(buffer.getFloat(position + 1));
+                } else if (type != 0) {
+                    statistics.accept(getFixedLong(buffer, position, width));
+                }
+            }
+        } else if (layout == Layout.COLUMNAR && !columns[leaf].isPaged()) {
+            ByteBuffer buffer = columnValues(leaf);
+            for (int i = 0; i < size; i++) {
+                if (ValueReader.isNull(buffer)) {
+                    buffer.position(buffer.position() + 1);
+                } else {
+                    statistics.accept(ValueReader.readDouble(buffer));
+                }
+            }
+        } else {
+            Cursor cursor = cursor();
+            for (int i = 0; i < size; i++) {
+                ByteBuffer buffer = cursor.seek(i, leaf);
+                if (!ValueReader.isNull(buffer)) {
+                    statistics.accept(ValueReader.readDouble(buffer));
+                }
+            }
+        }
+        return statistics;
+    }
+
+    /*
+     * an integer in the fixed width layout, where the width says how many bytes follow the type
+     */
+    private static long getFixedLong(ByteBuffer buffer, int position, int width) {
+        switch (width) {
+            case 2:
+                return buffer.get(position + 1);
+            case 3:
+                return buffer.getShort(position + 1);
+            case 5:
+                return buffer.getInt(position + 1);
+            default:
+                return buffer.getLong(position + 1);
+        }
+    }
+
+    /*
+     * a view of a column, positioned at the first value
+     */
+    private ByteBuffer columnValues(int leaf) {
+        ByteBuffer buffer = columns[leaf].getBuffer().duplicate();
+        buffer.position(0);
+        return buffer;
+    }
+
+    static boolean isIntegerNumber(BuiltinTypeHandler<?> handler) {
+        return handler instanceof LongHandler || handler instanceof IntegerHandler || handler instanceof ShortHandler
+                || handler instanceof ByteHandler;
+    }
+
+    /**
+     * Returns a new list with the elements that match the filter, in the same order. The filter is evaluated on the
+     * stored values and the matching elements are copied as they are stored, so no element is created.
+     * <p>
+     * The new list has the same layout and storage (on the heap for a {@link MappedContiguousList}) and shares the
+     * dictionaries of this list.
+     *
+     * @param filter the condition, for instance {@code Filter.eq("address.country", "NL")}
+     * @return the new list
+     * @throws IllegalArgumentException if the filter has a property that does not exist, or compares it to a value
+     *                                  of another type
+     */
+    @SuppressWarnings("unchecked")
+    public ContiguousList<E> filter(Filter filter) {
+        Filter.Matcher matcher = filter.bind(this);
+        ContiguousList<E> result = new ContiguousList<>((Class<E>) rootHandler.getType(),
+                storage instanceof MappedStorage ? Storage.HEAP : storage, layout);
+        result.dictionaries = dictionaries; // the copied codes must mean the same
+        if (fieldOffsetTable != null) {
+            result.enableFieldOffsetTable();
+        }
+        Cursor cursor = cursor();
+        Cursor copyCursor = cursor();
+        for (int i = 0; i < size; i++) {
+            if (matcher.test(cursor, i)) {
+                result.appendStored(copyCursor, i);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the indices of the elements that match the filter, see {@link #filter(Filter)}.
+     *
+     * @param filter the condition, for instance {@code Filter.startsWith("name", "Zaphod")}
+     * @return the indices, in ascending order
+     * @throws IllegalArgumentException if the filter has a property that does not exist, or compares it to a value
+     *                                  of another type
+     */
+    public int[] select(Filter filter) {
+        Filter.Matcher matcher = filter.bind(this);
+        IntList selected = new IntList();
+        Cursor cursor = cursor();
+        for (int i = 0; i < size; i++) {
+            if (matcher.test(cursor, i)) {
+                selected.add(i);
+            }
+        }
+        return selected.toArray();
+    }
+
+    /*
+     * adds element `index` of a list with the same type and layout, copying its stored values
+     */
+    private void appendStored(ContiguousList<E>.Cursor source, int index) {
+        if (layout == Layout.COLUMNAR) {
+            for (int column = 0; column < columns.length; column++) {
+                ByteBuffer buffer = source.seek(index, column);
+                int from = buffer.position();
+                columns[column].appendElement(buffer, from, from + valueLength(buffer, column));
+            }
+        } else if (layout == Layout.FIXED_WIDTH) {
+            ByteBuffer buffer = source.seek(index, 0);
+            data.appendElement(buffer, buffer.position(), buffer.position() + stride);
+        } else {
+            ByteBuffer buffer = source.seek(index, 0);
+            int from = buffer.position();
+            for (int leaf = 0; leaf < leaves.size(); leaf++) {
+                if (leaf > 0 && fieldOffsetTable != null) {
+                    // relative to the element, like nextTarget does
+                    fieldOffsetTable.add(buffer.position() - from);
+                }
+                ValueReader.skip(buffer);
+            }
+            data.appendElement(buffer, from, buffer.position());
+        }
+        extend();
+    }
+
+    /*
+     * null if the leaf is not dictionary encoded
+     */
+    StringDictionary getDictionary(int leaf) {
+        return dictionaries == null ? null : dictionaries[leaf];
+    }
+
+    // for tests
+    boolean hasCodec() {
+        return codec != null;
+    }
+
+    public Layout getLayout() {
+        return layout;
+    }
+
+    Storage getStorage() {
+        return storage;
     }
 
     /*
@@ -135,7 +1237,11 @@ public class ContiguousList<E> extends NotImplementedList<E> implements List<E>
         if (element == null) {
             return false;
         }
-        storePropertyData(element, rootHandler);
+        if (codec != null) {
+            codec.write(element, this);
+        } else {
+            storePropertyData(element, rootHandler);
+        }
         extend();
         return true;
     }
@@ -180,36 +1286,173 @@ public class ContiguousList<E> extends NotImplementedList<E> implements List<E>
     @Override
     @SuppressWarnings("unchecked")
     public E get(int index) {
-        if (index < 0 || index >= size) {
-            throw new IndexOutOfBoundsException("index <0 or >" + size);
-        }
-        data.position(elementIndices.get(index));
+        checkIndex(index);
         try {
             if (rootHandler instanceof BuiltinTypeHandler<?>) {
-                Object read = ValueReader.read(data);
-                return (E) ((BuiltinTypeHandler<?>) rootHandler).cast(read);
+                return (E) readLeaf(seekNext(index, 0), 0);
+            }
+            if (lazyElementConstructor != null) {
+                return (E) lazyElementConstructor.invokeExact(this, index);
+            }
+            if (codec != null) {
+                return codec.read(this, index);
             }
             // create a new instance of the list element type
             E newInstance = (E) rootHandler.getType().getDeclaredConstructor().newInstance();
 
-            // set the data
-            copyDataIntoNewObject(newInstance, (CompoundTypeHandler) rootHandler);
+            // set the data
+            copyDataIntoNewObject(newInstance, (CompoundTypeHandler) rootHandler, cursor(), index, 0);
+
+            return newInstance;
+        } catch (NoSuchMethodException | InstantiationException | IllegalAccessException |
+                 InvocationTargetException e) {
+            throw new IllegalStateException(e);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e); // can't happen, the lazy element constructor doesn't throw checked exceptions
+        }
+    }
+
+    void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index <0 or >" + size);
+        }
+    }
+
+    /**
+     * Finds a property of the element type, to be used in the typed accessors like {@link #getInt(int, PropertyHandle)}.
+     * Resolve the handle once and reuse it.
+     *
+     * @param propertyPath the name of the property. Nested properties are separated by dots, eg. "address.city".
+     *                     For lists of builtin types, like ContiguousList&lt;Long&gt;, use "" for the element itself.
+     * @return the handle
+     * @throws IllegalArgumentException if the element type does not have the property
+     */
+    public PropertyHandle getPropertyHandle(String propertyPath) {
+        int leaf = getLeafIndex(propertyPath);
+        return new PropertyHandle(rootHandler, leaf, propertyPath, leaves.get(leaf));
+    }
+
+    /**
+     * Keeps track of the offset of every property value of every element, so that reading a single property
+     * (the typed accessors, {@link #propertyIterator(String)}) takes constant time, instead of time proportional
+     * to the position of the property in the element. Meant for element types with lots of properties.
+     * <p>
+     * Only for the {@link Layout#ROW} layout (the others don't need it). Costs 4 bytes per property per element.
+     * The offsets of the existing elements are determined once, those of new elements are added on the fly.
+     */
+    public void enableFieldOffsetTable() {
+        if (layout != Layout.ROW) {
+            throw new IllegalStateException("Only for the row layout, not for " + layout);
+        }
+        if (fieldOffsetTable != null) {
+            return;
+        }
+        int fieldsPerElement = leaves.size() - 1;
+        IntList table = new IntList(Math.max(size * fieldsPerElement, 1));
+        Cursor cursor = new Cursor();
+        for (int i = 0; i < size; i++) {
+            ByteBuffer buffer = cursor.seek(i, 0);
+            for (int leaf = 1; leaf <= fieldsPerElement; leaf++) {
+                ValueReader.skip(buffer);
+                table.add(cursor.address());
+            }
+        }
+        fieldOffsetTable = table;
+    }
+
+    /**
+     * Reads a property value without creating the element and without boxing.
+     *
+     * @param index    the index of the element
+     * @param property the property handle, see {@link #getPropertyHandle(String)}
+     * @return the value, converted to int
+     * @throws NullPointerException  if the value is null
+     * @throws IllegalStateException if the value is not an integer number
+     */
+    public int getInt(int index, PropertyHandle property) {
+        return (int) getLong(index, property);
+    }
+
+    /**
+     * Reads a property value without creating the element and without boxing.
+     *
+     * @param index    the index of the element
+     * @param property the property handle, see {@link #getPropertyHandle(String)}
+     * @return the value
+     * @throws NullPointerException  if the value is null
+     * @throws IllegalStateException if the value is not an integer number
+     */
+    public long getLong(int index, PropertyHandle property) {
+        return ValueReader.readLong(seek(index, property));
+    }
+
+    /**
+     * Reads a property value without creating the element and without boxing.
+     *
+     * @param index    the index of the element
+     * @param property the property handle, see {@link #getPropertyHandle(String)}
+     * @return the value, converted to double if it's an integer number or float
+     * @throws NullPointerException  if the value is null
+     * @throws IllegalStateException if the value is not a number
+     */
+    public double getDouble(int index, PropertyHandle property) {
+        return ValueReader.readDouble(seek(index, property));
+    }
+
+    /**
+     * Reads a property value without creating the element.
+     *
+     * @param index    the index of the element
+     * @param property the property handle, see {@link #getPropertyHandle(String)}
+     * @return the value, or null
+     * @throws IllegalStateException if the value is not a String
+     */
+    public String getString(int index, PropertyHandle property) {
+        return readString(seek(index, property), property.getLeaf());
+    }
+
+    /**
+     * @param index    the index of the element
+     * @param property the property handle, see {@link #getPropertyHandle(String)}
+     * @return true if the property value is null
+     */
+    public boolean isNull(int index, PropertyHandle property) {
+        return ValueReader.isNull(seek(index, property));
+    }
 
-            return newInstance;
-        } catch (NoSuchMethodException | InstantiationException | IllegalAccessException |
-                 InvocationTargetException e) {
-            throw new IllegalStateException(e);
+    private ByteBuffer seek(int index, PropertyHandle property) {
+        checkIndex(index);
+        checkProperty(property);
+        return seek(index, property.getLeaf());
+    }
+
+    void checkProperty(PropertyHandle property) {
+        if (property.getRoot() != rootHandler) {
+            throw new IllegalArgumentException(property + " is not a property of " + rootHandler.getType().getName());
         }
     }
 
-    /*
+    /**
+     * Returns a cursor to read the elements property by property, without creating them.
+     * The view is positioned before the first element.
      *
+     * @see ElementView
+     */
+    public ElementView<E> view() {
+        return new ElementView<>(this, leaves.size());
+    }
+
+    /*
+     * returns the leaf index for the next property
      */
-    private void copyDataIntoNewObject(Object element, CompoundTypeHandler compoundType) {
-        compoundType.getProperties().forEach(property -> {
+    private int copyDataIntoNewObject(Object element, CompoundTypeHandler compoundType, Cursor cursor, int index, int leaf) {
+        for (TypeHandler property : compoundType.getProperties()) {
             if (property instanceof BuiltinTypeHandler) {
                 BuiltinTypeHandler<?> type = ((BuiltinTypeHandler<?>) property);
-                Object readValue = ValueReader.read(data);
+                Object readValue = readRaw(cursor.seekNext(index, leaf), leaf);
+                leaf++;
                 type.setValue(element, readValue);
             } else {
                 try {
@@ -221,12 +1464,196 @@ public class ContiguousList<E> extends NotImplementedList<E> implements List<E>
                     p.getSetter().invoke(element, newInstance);
 
                     // recurse down
-                    copyDataIntoNewObject(newInstance, p);
+                    leaf = copyDataIntoNewObject(newInstance, p, cursor, index, leaf);
                 } catch (Throwable e) {
                     throw new RuntimeException(e);
                 }
             }
-        });
+        }
+        return leaf;
+    }
+
+    /*
+     * Returns the buffer positioned at the value of leaf property `leaf` of element `index`,
+     * provided that the leaves of the element are read in order. See Cursor.
+     */
+    ByteBuffer seekNext(int index, int leaf) {
+        return new Cursor().seekNext(index, leaf);
+    }
+
+    /*
+     * Returns the buffer positioned at the value of leaf property `leaf` of element `index`. See Cursor.
+     */
+    ByteBuffer seek(int index, int leaf) {
+        return new Cursor().seek(index, leaf);
+    }
+
+    /*
+     * A new cursor, for reading more than one value (also used by the generated codecs), or for readers that position
+     * it across calls, like iterators.
+     *
+     * Cursors are not kept per thread: a cursor refers to its list, so as the value of a ThreadLocal it would keep
+     * the list reachable for as long as the thread lives, which for a pooled thread is forever.
+     */
+    Cursor cursor() {
+        return new Cursor();
+    }
+
+    /*
+     * Reads the stored data through its own view (ByteBuffer.duplicate) of the buffers, so that a thread that
+     * positions its cursor does not move that of another thread.
+     *
+     * The stored offsets are addresses, which for paged storage are not the same as the position in the buffer
+     * (see DataBuffer). A view is kept of the page that was read last.
+     */
+    class Cursor {
+        private ByteBuffer dataSource; // the buffer (page) of the list that buffer is a view of
+        private ByteBuffer buffer;
+        private int dataAddress; // of the first byte of dataSource
+        private final ByteBuffer[] columnSources = columns == null ? null : new ByteBuffer[columns.length];
+        private final ByteBuffer[] columnBuffers = columns == null ? null : new ByteBuffer[columns.length];
+        private final int[] columnAddresses = columns == null ? null : new int[columns.length];
+
+        /*
+         * Returns the buffer positioned at the value of leaf property `leaf` of element `index`,
+         * provided that the leaves of the element are read in order.
+         *
+         * In the row layout the values of an element are consecutive, so only the first one needs positioning.
+         */
+        ByteBuffer seekNext(int index, int leaf) {
+            if (layout == Layout.ROW) {
+                if (leaf == 0) {
+                    return at(elementIndices.get(index));
+                }
+                return buffer;
+            }
+            return seek(index, leaf);
+        }
+
+        /*
+         * Returns the buffer positioned at the value of leaf property `leaf` of element `index`.
+         *
+         * In the row layout this means skipping the values before it, unless there is a field offset table.
+         */
+        ByteBuffer seek(int index, int leaf) {
+            if (layout == Layout.FIXED_WIDTH) {
+                return at(index * stride + fieldOffsets[leaf]);
+            }
+            if (layout == Layout.ROW) {
+                if (leaf > 0 && fieldOffsetTable != null) {
+                    return at(fieldOffsetTable.get(index * (leaves.size() - 1) + leaf - 1));
+                }
+                ByteBuffer buffer = at(elementIndices.get(index));
+                for (int i = 0; i < leaf; i++) {
+                    ValueReader.skip(buffer);
+                }
+                return buffer;
+            }
+            return column(leaf, columnIndices[leaf].get(index));
+        }
+
+        /*
+         * the data buffer (row or fixed width layout) positioned at an address
+         */
+        ByteBuffer at(int address) {
+            ByteBuffer source = data.getPage(address);
+            if (source != dataSource) {
+                dataSource = source;
+                buffer = source.duplicate();
+            }
+            // also when the buffer is the same, it may be a pooled one that is now used for another page
+            dataAddress = data.getPageAddress(address);
+            buffer.position(address - dataAddress);
+            return buffer;
+        }
+
+        /*
+         * the address of the current position in the data buffer
+         */
+        int address() {
+            return dataAddress + buffer.position();
+        }
+
+        private ByteBuffer column(int column, int address) {
+            DataBuffer columnData = columns[column];
+            ByteBuffer source = columnData.getPage(address);
+            if (source != columnSources[column]) {
+                columnSources[column] = source;
+                columnBuffers[column] = source.duplicate();
+            }
+            columnAddresses[column] = columnData.getPageAddress(address);
+            ByteBuffer buffer = columnBuffers[column];
+            buffer.position(address - columnAddresses[column]);
+            return buffer;
+        }
+    }
+
+    /**
+     * Returns a {@link Spliterator} over the elements, that splits on element boundaries. Every element is read
+     * independently of the others, so {@code parallelStream()} can read the list from multiple threads.
+     * <p>
+     * The list must not be modified while the spliterator is in use.
+     */
+    @Override
+    public Spliterator<E> spliterator() {
+        return new ElementSpliterator(0, size);
+    }
+
+    class ElementSpliterator implements Spliterator<E> {
+        private final int expectedSize;
+        private final int fence;
+        private int index;
+
+        ElementSpliterator(int index, int fence) {
+            this.expectedSize = size;
+            this.index = index;
+            this.fence = fence;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super E> action) {
+            if (index >= fence) {
+                return false;
+            }
+            action.accept(get(index++));
+            checkForModification();
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super E> action) {
+            while (index < fence) {
+                action.accept(get(index++));
+            }
+            checkForModification();
+        }
+
+        @Override
+        public Spliterator<E> trySplit() {
+            int middle = (index + fence) >>> 1;
+            if (middle <= index) {
+                return null;
+            }
+            ElementSpliterator prefix = new ElementSpliterator(index, middle);
+            index = middle;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return fence - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | NONNULL;
+        }
+
+        private void checkForModification() {
+            if (size != expectedSize) {
+                throw new ConcurrentModificationException("Modifications detected while iterating.");
+            }
+        }
     }
 
     /**
@@ -244,10 +1671,54 @@ public class ContiguousList<E> extends NotImplementedList<E> implements List<E>
         return new ValueIterator();
     }
 
+    /**
+     * Returns an {@link Iterator} over the values of a single property, for all elements in the list.
+     * <p>
+     * In the {@link Layout#COLUMNAR} and {@link Layout#FIXED_WIDTH} layouts this reads only the data for the property.
+     * In the row layout the values of the preceding properties are skipped.
+     *
+     * @param propertyPath the name of the property. Nested properties are separated by dots, eg. "address.city"
+     * @return an Iterator over the property values
+     * @throws IllegalArgumentException if the element type does not have the property
+     */
+    public Iterator<?> propertyIterator(String propertyPath) {
+        return new PropertyIterator(getLeafIndex(propertyPath));
+    }
+
     public Iterator<String> jsonIterator() {
         return new JsonIterator();
     }
 
+    class PropertyIterator implements Iterator<Object> {
+        private final int leaf;
+        private final BuiltinTypeHandler<?> handler;
+        private final int originalSize;
+        private final Cursor cursor = new Cursor();
+        private int index;
+
+        PropertyIterator(int leaf) {
+            this.leaf = leaf;
+            this.handler = leaves.get(leaf);
+            this.originalSize = size;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return index < originalSize;
+        }
+
+        @Override
+        public Object next() {
+            if (originalSize != size) {
+                throw new ConcurrentModificationException("Modifications detected while iterating.");
+            }
+            if (index >= originalSize) {
+                throw new NoSuchElementException();
+            }
+            return handler.cast(readRaw(cursor.seek(index++, leaf), leaf));
+        }
+    }
+
     class JsonIterator implements Iterator<String> {
 
         private int index;
@@ -270,24 +1741,61 @@ public class ContiguousList<E> extends NotImplementedList<E> implements List<E>
      * @return
      */
     public String getAsJson(int index) {
-        if (index < 0 || index >= size) {
-            throw new IndexOutOfBoundsException("index <0 or >" + size);
-        }
-        data.position(elementIndices.get(index));
+        checkIndex(index);
         if (rootHandler instanceof BuiltinTypeHandler<?>) {
             BuiltinTypeHandler<?> handler = (BuiltinTypeHandler<?>) rootHandler;
-            return getValue(handler);
+            return getValue(handler, seekNext(index, 0), 0);
         }
         // create a new instance of the list element type
         StringBuilder s = new StringBuilder(300);
         s.append("{");
-        copyDataIntoStringBuilder(s, (CompoundTypeHandler) rootHandler);
+        copyDataIntoStringBuilder(s, (CompoundTypeHandler) rootHandler, cursor(), index, 0);
         s.append("}");
         return s.toString();
     }
 
-    private String getValue(BuiltinTypeHandler<?> handler) {
-        String value = String.valueOf(ValueReader.read(data));
+    /**
+     * Writes all elements as a JSON array in UTF-8, without decoding the stored strings.
+     * <p>
+     * Unlike {@link #getAsJson(int)} nested objects have quoted property names, so the output is valid JSON.
+     *
+     * @param out where to write to. It is flushed, not closed.
+     */
+    public void writeJson(OutputStream out) throws IOException {
+        getJsonWriter().write(this, out);
+    }
+
+    /**
+     * Writes one element as JSON in UTF-8, the same as it appears in {@link #writeJson(OutputStream)}. For callers
+     * that write the array themselves, like a Jackson serializer.
+     *
+     * @param index the index of the element
+     * @param out   where to write to. It is flushed, not closed.
+     */
+    public void writeJson(int index, OutputStream out) throws IOException {
+        checkIndex(index);
+        getJsonWriter().write(this, index, out);
+    }
+
+    private JsonWriter getJsonWriter() {
+        if (jsonWriter == null) {
+            jsonWriter = new JsonWriter(rootHandler, leaves);
+        }
+        return jsonWriter;
+    }
+
+    /**
+     * Writes all elements as a JSON array in UTF-8, without decoding the stored strings.
+     *
+     * @param channel where to write to. It is not closed.
+     * @see #writeJson(OutputStream)
+     */
+    public void writeJson(WritableByteChannel channel) throws IOException {
+        writeJson(Channels.newOutputStream(channel));
+    }
+
+    private String getValue(BuiltinTypeHandler<?> handler, ByteBuffer buffer, int leaf) {
+        String value = String.valueOf(readRaw(buffer, leaf));
         if (handler instanceof StringHandler) {
             return quote(value);
         }
@@ -300,60 +1808,70 @@ public class ContiguousList<E> extends NotImplementedList<E> implements List<E>
     }
 
     /*
-     *
+     * returns the leaf index for the next property
      */
-    private void copyDataIntoStringBuilder(StringBuilder s, CompoundTypeHandler compoundType) {
-        compoundType.getProperties().forEach(property -> {
+    private int copyDataIntoStringBuilder(StringBuilder s, CompoundTypeHandler compoundType, Cursor cursor, int index, int leaf) {
+        for (TypeHandler property : compoundType.getProperties()) {
             if (property instanceof BuiltinTypeHandler) {
                 BuiltinTypeHandler<?> typeHandler = (BuiltinTypeHandler<?>) property;
                 s.append("\"")
                         .append(typeHandler.getName())
                         .append("\": ")
-                        .append(getValue(typeHandler));
+                        .append(getValue(typeHandler, cursor.seekNext(index, leaf), leaf));
+                leaf++;
             } else {
                 CompoundTypeHandler p = (CompoundTypeHandler) property;
                 s.append(p.getName()).append(":{");
                 // recurse down
-                copyDataIntoStringBuilder(s, p);
+                leaf = copyDataIntoStringBuilder(s, p, cursor, index, leaf);
                 s.append("}");
             }
             s.append(", ");
-        });
+        }
         s.setLength(s.length() - 2);
+        return leaf;
     }
 
     List<BuiltinTypeHandler<?>> getBuiltinTypeHandlers() {
-        final List<BuiltinTypeHandler<?>> types = new ArrayList<>();
-        getStoredTypes(rootHandler, types);
-        return types;
+        return leaves;
+    }
+
+    /*
+     * the index of the property in the stored values of an element
+     */
+    int getLeafIndex(String propertyPath) {
+        int leaf = leafPaths.indexOf(propertyPath);
+        if (leaf == -1) {
+            throw new IllegalArgumentException("No property " + propertyPath + " in " + rootHandler.getType().getName());
+        }
+        return leaf;
     }
 
-    private void getStoredTypes(TypeHandler handler, List<BuiltinTypeHandler<?>> types) {
+    private static void getStoredTypes(TypeHandler handler, String path, List<BuiltinTypeHandler<?>> types, List<String> paths) {
         if (handler instanceof BuiltinTypeHandler<?>) {
             types.add((BuiltinTypeHandler<?>) handler);
+            paths.add(path);
         } else {
-            ((CompoundTypeHandler) handler).getProperties()
-                    .forEach(propertyHandler -> getStoredTypes(propertyHandler, types));
+            for (TypeHandler propertyHandler : ((CompoundTypeHandler) handler).getProperties()) {
+                String name = propertyHandler.getName();
+                getStoredTypes(propertyHandler, path.isEmpty() ? name : path + "." + name, types, paths);
+            }
         }
     }
 
     public class ValueIterator implements Iterator<Object> {
         private final int originalSize;
-        private final int originalPosition;
-        private final List<BuiltinTypeHandler<?>> typeHandlers;
-        private Iterator<BuiltinTypeHandler<?>> typeHandlersIterator;
+        private final Cursor cursor = new Cursor(); // not the one of the thread, because get() may be called in between
+        private int index;
+        private int leaf;
 
         ValueIterator() {
-            typeHandlers = getBuiltinTypeHandlers();
-            typeHandlersIterator = typeHandlers.iterator();
             this.originalSize = size;
-            this.originalPosition = data.position();
-            data.position(0);
         }
 
         @Override
         public boolean hasNext() {
-            return data.position() < originalPosition;
+            return index < originalSize;
         }
 
         @Override
@@ -362,17 +1880,15 @@ public class ContiguousList<E> extends NotImplementedList<E> implements List<E>
                 throw new ConcurrentModificationException("Modifications detected while iterating.");
             }
             /* The following depends on the bytebuffer position. Calling add(..) would mess it up
-             * so that's why we first check for modifications (me and the computer)
-             *
-             * I could also maintain the position here. But you main want to fail ... dunno */
-            Object rawValue = ValueReader.read(data);
+             * so that's why we first check for modifications (me and the computer) */
+            Object rawValue = readRaw(cursor.seekNext(index, leaf), leaf);
 
             // transform (currently integers to the expected type)
-            BuiltinTypeHandler<?> handler;
-            while (!typeHandlersIterator.hasNext()) {
-                typeHandlersIterator = typeHandlers.iterator();
+            BuiltinTypeHandler<?> handler = leaves.get(leaf);
+            if (++leaf == leaves.size()) {
+                leaf = 0;
+                index++;
             }
-            handler = typeHandlersIterator.next();
 
             return handler.cast(rawValue);
         }
@@ -448,9 +1964,129 @@ public class ContiguousList<E> extends NotImplementedList<E> implements List<E>
         return true;
     }
 
+    /**
+     * Adds the elements like {@link #addAll(Collection)}, but for a large collection the work is spread over the
+     * threads of the common {@link ForkJoinPool}. Every thread encodes a part of the collection into a buffer
+     * of its own and at the end these segments are appended to the list with bulk copies. The result is the same
+     * as that of addAll.
+     * <p>
+     * The getters of the elements are called from several threads, so they must not depend on the calling thread.
+     * If encoding an element fails, none of the elements are added.
+     *
+     * @param collection the elements to add
+     * @return true
+     */
+    public boolean addAllParallel(Collection<? extends E> collection) {
+        Object[] elements = collection.toArray();
+        int segmentCount = Math.min(elements.length / MIN_SEGMENT_SIZE, ForkJoinPool.getCommonPoolParallelism() * 4);
+        if (segmentCount < 2) {
+            return addAll(collection);
+        }
+        int segmentSize = (elements.length + segmentCount - 1) / segmentCount;
+        List<ContiguousList<E>> segments = IntStream.range(0, segmentCount).parallel()
+                .mapToObj(segment -> encodeSegment(elements, segment * segmentSize,
+                        Math.min(elements.length, (segment + 1) * segmentSize)))
+                .collect(Collectors.toList()); // in order
+        for (ContiguousList<E> segment : segments) {
+            append(segment);
+            segment.close();
+        }
+        return true;
+    }
+
+    /*
+     * a temporary list with the same layout, that holds a part of the elements
+     */
+    @SuppressWarnings("unchecked")
+    private ContiguousList<E> encodeSegment(Object[] elements, int from, int to) {
+        ContiguousList<E> segment = new ContiguousList<>((Class<E>) rootHandler.getType(), Storage.HEAP, layout);
+        segment.dictionaries = dictionaries; // shared, so that the codes are the same
+        if (fieldOffsetTable != null) {
+            segment.enableFieldOffsetTable();
+        }
+        for (int i = from; i < to; i++) {
+            segment.add((E) elements[i]);
+        }
+        return segment;
+    }
+
+    /*
+     * Copies the data of the segment to the end of this list. The offsets in the segment start at 0,
+     * so they are moved by the position the data is copied to. Index 0 of the segment is the start of its
+     * first element, which this list already has as its current end.
+     */
+    private void append(ContiguousList<E> segment) {
+        if (data != null && data.isPaged() || columns != null && columns[0].isPaged()) {
+            appendPerElement(segment);
+        } else if (layout == Layout.ROW) {
+            int base = data.getPosition();
+            data.append(segment.data);
+            elementIndices.addAll(segment.elementIndices, 1, base);
+            if (fieldOffsetTable != null) {
+                fieldOffsetTable.addAll(segment.fieldOffsetTable, 0, base);
+            }
+            data.startElement();
+            size += segment.size;
+        } else if (layout == Layout.FIXED_WIDTH) {
+            data.append(segment.data);
+            size += segment.size;
+        } else {
+            for (int i = 0; i < columns.length; i++) {
+                int base = columns[i].getPosition();
+                columns[i].append(segment.columns[i]);
+                columnIndices[i].addAll(segment.columnIndices[i], 1, base);
+                columns[i].startElement();
+            }
+            size += segment.size;
+        }
+    }
+
+    /*
+     * paged storage: every element is copied on its own, because it may have to go to the next page
+     */
+    private void appendPerElement(ContiguousList<E> segment) {
+        int fieldsPerElement = leaves.size() - 1;
+        for (int i = 0; i < segment.size; i++) {
+            if (layout == Layout.ROW) {
+                int from = segment.elementIndices.get(i);
+                data.appendElement(segment.data.getBuffer(), from, segment.elementIndices.get(i + 1));
+                if (fieldOffsetTable != null) {
+                    for (int field = 0; field < fieldsPerElement; field++) {
+                        // relative to the element, like nextTarget does
+                        fieldOffsetTable.add(segment.fieldOffsetTable.get(i * fieldsPerElement + field) - from);
+                    }
+                }
+            } else {
+                for (int column = 0; column < columns.length; column++) {
+                    IntList indices = segment.columnIndices[column];
+                    columns[column].appendElement(segment.columns[column].getBuffer(), indices.get(i),
+                            indices.get(i + 1));
+                }
+            }
+            extend();
+        }
+    }
+
     public void clear() {
-        this.bufferPosition = 0;
         this.size = 0;
+        this.currentColumn = 0;
+        resetIndexes();
+        if (layout == Layout.ROW) {
+            this.data.reset();
+            this.elementIndices.clear();
+            this.elementIndices.add(0);
+            if (fieldOffsetTable != null) {
+                fieldOffsetTable.clear();
+            }
+        } else if (layout == Layout.FIXED_WIDTH) {
+            this.data.reset();
+        } else {
+            for (int i = 0; i < columns.length; i++) {
+                columns[i].reset();
+                columnIndices[i].clear();
+                columnIndices[i].add(0);
+            }
+        }
     }
 
     public int size() {
@@ -515,232 +2151,207 @@ public class ContiguousList<E> extends NotImplementedList<E> implements List<E>
         }
     }
 
-    private void store(byte[] bytes) {
-        ensureFree(bytes.length);
-        data.position(bufferPosition); // ensures intermittent reads/writes are safe
-        data.put(bytes);
-        bufferPosition += bytes.length;
+    /*
+     * The values of an element are stored in the order of the leaves. In the row layout they all go to
+     * the same buffer, in the columnar layout every value goes to the next column.
+     * The fixed width layout and the field offset table need to know the field, so they also count.
+     */
+    private DataBuffer nextTarget() {
+        if (layout == Layout.ROW) {
+            // counts the leaves also without offset table, for the dictionaries
+            if (currentColumn++ > 0 && fieldOffsetTable != null) {
+                // relative to the start of the element until it is complete, see extend
+                fieldOffsetTable.add(data.getPosition() - data.getElementStart());
+            }
+            return data;
+        } else if (layout == Layout.FIXED_WIDTH) {
+            currentColumn++;
+            return data;
+        }
+        return columns[currentColumn++];
     }
 
-    private void store0() {
-        ensureFree(1);
-        data.put((byte) 0);
-        bufferPosition += 1;
+    /*
+     * in the fixed width layout a null takes as much room as a value
+     */
+    private void storeNull(DataBuffer target) {
+        if (layout == Layout.FIXED_WIDTH) {
+            target.storeNull(fieldWidths[currentColumn - 1]);
+        } else {
+            target.storeNull();
+        }
     }
 
     void storeString(String value) {
+        DataBuffer target = nextTarget();
         if (value == null) {
-            store0();
+            storeNull(target);
+        } else if (dictionaries != null && dictionaries[currentColumn - 1] != null) {
+            target.storeLong(dictionaries[currentColumn - 1].encode(value));
         } else {
-            byte[] utf = value.getBytes(StandardCharsets.UTF_8);
-            store(Varint.write(((long) (utf.length) << 1) + STRING_OFFSET));
-            store(utf);
+            target.storeString(value);
         }
     }
 
     void storeLong(Long value) {
-        if (value == null) {
-            store0();
-        } else {
-            byte[] valueAsBytes = getValueAsBytes(value);
-            store(getIntegerType(value, valueAsBytes.length));
-            store(valueAsBytes);
-        }
+        storeIntegerValue(value);
     }
 
     void storeInteger(Integer value) {
-        if (value == null) {
-            store0();
-        } else {
-            byte[] valueAsBytes = getValueAsBytes(value);
-            store(getIntegerType(value, valueAsBytes.length));
-            store(valueAsBytes);
-        }
+        storeIntegerValue(value);
     }
 
     void storeByte(Byte value) {
-        if (value == null) {
-            store0();
-        } else {
-            byte[] valueAsBytes = getValueAsBytes(value);
-            store(getIntegerType(value, valueAsBytes.length));
-            store(valueAsBytes);
-        }
+        storeIntegerValue(value);
     }
 
     void storeShort(Short value) {
+        storeIntegerValue(value);
+    }
+
+    private void storeIntegerValue(Number value) {
         if (value == null) {
-            store0();
+            storeNull(nextTarget());
         } else {
-            byte[] valueAsBytes = getValueAsBytes(value);
-            store(getIntegerType(value, valueAsBytes.length));
-            store(valueAsBytes);
+            storeLongValue(value.longValue());
         }
     }
 
     void storeDouble(Double value) {
         if (value == null) {
-            store0();
+            storeNull(nextTarget());
         } else {
-            store(DOUBLE_TYPE);
-            store(ByteBuffer.wrap(new byte[8]).putDouble(0, value).array());
+            storeDoubleValue(value);
         }
     }
 
     void storeFloat(Float value) {
         if (value == null) {
-            store0();
+            storeNull(nextTarget());
         } else {
-            store(FLOAT_TYPE);
-            store(ByteBuffer.wrap(new byte[4]).putFloat(0, value).array());
+            storeFloatValue(value);
         }
     }
 
-    // to be called by framework to force element count
-    // used by SetterIterator
-    void extend() {
-        size += 1;
-        // keep track of index of element in data
-        elementIndices.add(bufferPosition);
+    /*
+     * the primitive versions are called directly by the generated codecs, without boxing
+     */
+    void storeLongValue(long value) {
+        DataBuffer target = nextTarget();
+        if (layout == Layout.FIXED_WIDTH) {
+            target.storeFixedLong(value, fieldWidths[currentColumn - 1] - 1);
+        } else {
+            target.storeLong(value);
+        }
     }
 
-    byte[] getData() {
-        return Arrays.copyOfRange(data.array(), 0, bufferPosition);
+    void storeDoubleValue(double value) {
+        nextTarget().storeDouble(value);
     }
 
-    private void ensureFree(int length) {
-        while (bufferPosition + length > data.capacity()) {
-            ByteBuffer bytes = this.data;
-            bytes.position(0);
-            BufferCache.release(this.data);
-            this.data = BufferCache.get((int) (bytes.capacity() * 1.5));
-            this.data.put(bytes);
-        }
+    void storeFloatValue(float value) {
+        nextTarget().storeFloat(value);
     }
 
-    private static byte[] getValueAsBytes(long value) {
-        if (value == 0) {
-            return new byte[0];
-        } else if (value == 1) {
-            return new byte[0];
-        } else {
-            return longToBytes(value, getLengthOfByteEncoding(value));
-        }
+    /*
+     * for the generated code: stores or reads a value that needs its type handler, eg. a BigDecimal
+     */
+    void storeLeaf(int leaf, Object value) {
+        leaves.get(leaf).storeValue(value, this);
     }
 
-    private static byte[] getValueAsBytes(int value) {
-        if (value == 0) {
-            return new byte[0];
-        } else if (value == 1) {
-            return new byte[0];
-        } else {
-            return intToBytes(value, getLengthOfByteEncoding(value));
-        }
+    Object readLeaf(ByteBuffer buffer, int leaf) {
+        Object value = readRaw(buffer, leaf);
+        return value == null ? null : leaves.get(leaf).cast(value);
     }
 
-    private static byte[] getValueAsBytes(short value) {
-        if (value == 0) {
-            return new byte[0];
-        } else if (value == 1) {
-            return new byte[0];
-        } else {
-            return intToBytes(value, getLengthOfByteEncoding(value));
+    /*
+     * also for the generated code, because the value may be dictionary encoded
+     */
+    String readString(ByteBuffer buffer, int leaf) {
+        StringDictionary dictionary = getDictionary(leaf);
+        if (dictionary == null) {
+            return ValueReader.readString(buffer);
         }
+        if (ValueReader.isNull(buffer)) {
+            ValueReader.skip(buffer);
+            return null;
+        }
+        return dictionary.get((int) ValueReader.readLong(buffer));
     }
 
-    private static byte[] getValueAsBytes(byte value) {
-        if (value == 0) {
-            return new byte[0];
-        } else if (value == 1) {
-            return new byte[0];
-        } else {
-            return new byte[]{value};
+    /*
+     * the value as stored, except for the dictionary codes
+     */
+    private Object readRaw(ByteBuffer buffer, int leaf) {
+        StringDictionary dictionary = getDictionary(leaf);
+        if (dictionary == null) {
+            return ValueReader.read(buffer);
         }
+        return readString(buffer, leaf);
     }
 
-    private static int getLengthOfByteEncoding(long value) {
-        long u;
-        if (value < 0) {
-            u = ~value;
-        } else {
-            u = value;
-        }
-        if (u <= Byte.MAX_VALUE) {
-            return 1;
-        } else if (u <= Short.MAX_VALUE) {
-            return 2;
-        } else if (u <= MAX_24BITS) {
-            return 3;
-        } else if (u <= Integer.MAX_VALUE) {
-            return 4;
-        } else if (u <= MAX_48BITS) {
-            return 6;
-        } else {
-            return 8;
-        }
+    // to be called by framework to force element count
+    // used by SetterIterator
+    void extend() {
+        // keep track of index of element in data
+        // with paged storage the element may have moved to the next page while it was stored (see DataBuffer),
+        // so only now its offsets are final
+        if (layout == Layout.ROW) {
+            int start = data.getElementStart();
+            elementIndices.set(size, start);
+            if (fieldOffsetTable != null) {
+                for (int i = fieldOffsetTable.size() - leaves.size() + 1; i < fieldOffsetTable.size(); i++) {
+                    fieldOffsetTable.set(i, fieldOffsetTable.get(i) + start);
+                }
+            }
+            elementIndices.add(data.getPosition());
+            data.startElement();
+        } else if (layout == Layout.COLUMNAR) {
+            for (int i = 0; i < columns.length; i++) {
+                columnIndices[i].set(size, columns[i].getElementStart());
+                columnIndices[i].add(columns[i].getPosition());
+                columns[i].startElement();
+            }
+        } // fixed width needs no index
+        size += 1;
+        currentColumn = 0;
     }
 
-    private static int getLengthOfByteEncoding(short value) {
-        int u;
-        if (value < 0) {
-            u = ~value;
-        } else {
-            u = value;
-        }
-        if (u <= Byte.MAX_VALUE) {
-            return 1;
-        }
-        return 2;
+    /*
+     * used when the data is already in storage, ie. for a reopened file (row layout only)
+     * the caller restores the element offsets
+     */
+    void restore(int size, int bufferPosition) {
+        this.size = size;
+        this.data.setPosition(bufferPosition);
     }
 
-    private static int getLengthOfByteEncoding(int value) {
-        int u;
-        if (value < 0) {
-            u = ~value;
-        } else {
-            u = value;
-        }
-        if (u <= Byte.MAX_VALUE) {
-            return 1;
-        } else if (u <= Short.MAX_VALUE) {
-            return 2;
-        } else if (u <= MAX_24BITS) {
-            return 3;
-        } else {
-            return 4;
-        }
+    /*
+     * true if seek(index, leaf) does not have to skip values
+     */
+    boolean canSeekDirectly() {
+        return layout != Layout.ROW || fieldOffsetTable != null;
     }
 
-    private static byte[] intToBytes(int n, int nbytes) {
-        byte[] b = new byte[nbytes];
-        for (int i = 0; i < nbytes; i++) {
-            b[i] = (byte) ((n >> (nbytes - i - 1) * 8) & 0xFF);
-        }
+    ByteBuffer getBuffer() {
+        return data.getBuffer();
+    }
 
-        return b;
+    int getBufferPosition() {
+        return data.getPosition();
     }
 
-    private static byte[] longToBytes(long n, int nbytes) {
-        byte[] b = new byte[nbytes];
-        for (int i = 0; i < nbytes; i++) {
-            b[i] = (byte) ((n >> (nbytes - i - 1) * 8) & 0xFF);
-        }
+    IntList getElementIndices() {
+        return elementIndices;
+    }
 
-        return b;
+    byte[] getData() {
+        return data.getData();
     }
 
-    private static byte[] getIntegerType(long value, int bytesLength) {
-        if (value == 0) {
-            return new byte[]{8};
-        } else if (value == 1) {
-            return new byte[]{9};
-        } else {
-            if (bytesLength < 5) {
-                return Varint.write(bytesLength);
-            } else if (bytesLength < 7) {
-                return Varint.write(5);
-            } else return Varint.write(6);
-        }
+    void ensureFree(int length) {
+        data.ensureFree(length);
     }
 
     private String capitalize(String text) {
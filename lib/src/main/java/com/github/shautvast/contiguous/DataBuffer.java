@@ -0,0 +1,407 @@
+package com.github.shautvast.contiguous;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * A growable buffer, provided by a Storage, that values are appended to in the SQLite-like format (see ValueReader).
+ *
+ * All store methods write directly into the buffer (absolute puts), so apart from buffer growth
+ * they don't allocate anything.
+ *
+ * With a PagedStorage the data is kept in pages of a fixed size, so that growing adds a page instead of copying
+ * everything. The position of a value is then an address: page << pageShift + position in the page.
+ * An element never straddles two pages (readers skip from one value to the next within a buffer): when the rest
+ * of the page is too small, the part of the element that is already written moves to the next page.
+ * That's why the caller marks the start of every element, and why the address of a value is only final
+ * once its element is complete. An element that is larger than a page gets a buffer of a multiple of the page
+ * size, that takes the place of that many pages.
+ *
+ * Pages that are full can be compressed (see compress). Reading such a page decompresses it, into the PageCache.
+ */
+final class DataBuffer {
+
+    static final byte DOUBLE_TYPE = 7;
+    static final byte ZERO_TYPE = 8;
+    static final byte ONE_TYPE = 9;
+    static final byte FLOAT_TYPE = 10; // not in line with SQLite anymore
+    static final int STRING_OFFSET = 13;
+    static final int BYTES_OFFSET = 12; // blob TODO decide if include
+
+    private final Storage storage;
+
+    private ByteBuffer buffer; // the current page when paged
+
+    private int position; // in buffer
+
+    private int elementStart; // in buffer
+
+    private final int pageShift;
+    private final List<Page> pages; // per page address, null when not paged
+    private int base; // the address of buffer
+    private PageCache cache; // once compressed
+
+    DataBuffer(Storage storage, int capacity) {
+        this.storage = storage;
+        if (storage instanceof PagedStorage) {
+            this.pageShift = ((PagedStorage) storage).getPageShift();
+            this.pages = new ArrayList<>();
+            addPage(1);
+        } else {
+            this.pageShift = 0;
+            this.pages = null;
+            this.buffer = storage.allocate(capacity);
+        }
+    }
+
+    ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    /*
+     * the end of the data, ie. where the next value goes
+     */
+    int getPosition() {
+        return base + position;
+    }
+
+    /*
+     * not for paged data, see reset
+     */
+    void setPosition(int position) {
+        this.position = position;
+        this.elementStart = position;
+    }
+
+    /*
+     * empties the buffer, keeping only the first page (if it's not compressed)
+     */
+    void reset() {
+        if (pages != null && (pages.size() > 1 || pages.get(0).buffer == null)) {
+            releasePages(1);
+            Page first = pages.get(0);
+            pages.clear();
+            if (first.buffer != null) {
+                for (int i = 0; i < first.size >>> pageShift; i++) {
+                    pages.add(first);
+                }
+                buffer = first.buffer;
+            } else {
+                addPage(1);
+            }
+            base = 0;
+            cache = null;
+        }
+        setPosition(0);
+    }
+
+    /*
+     * marks where the next element starts, the part that moves along when it does not fit the page
+     */
+    void startElement() {
+        elementStart = position;
+    }
+
+    int getElementStart() {
+        return base + elementStart;
+    }
+
+    /*
+     * the buffer that contains address
+     */
+    ByteBuffer getPage(int address) {
+        if (pages == null) {
+            return buffer;
+        }
+        Page page = pages.get(address >>> pageShift);
+        ByteBuffer pageBuffer = page.buffer;
+        if (pageBuffer != null) {
+            return pageBuffer;
+        }
+        pageBuffer = page.decompressed;
+        if (pageBuffer != null) {
+            page.referenced = true;
+            return pageBuffer;
+        }
+        return cache.load(page);
+    }
+
+    /*
+     * the address of the first byte of getPage(address)
+     */
+    int getPageAddress(int address) {
+        return pages == null ? 0 : pages.get(address >>> pageShift).address;
+    }
+
+    boolean isPaged() {
+        return pages != null;
+    }
+
+    /*
+     * Compresses the pages that are full, ie. all but the current one, and hands their buffers back to the storage.
+     * A page that does not get smaller is left as it is. Only for paged data.
+     */
+    void compress(int cachedPages) {
+        if (cache == null || cache.getCapacity() != cachedPages) {
+            cache = new PageCache(cachedPages);
+        }
+        Page previous = null;
+        for (Page page : pages) {
+            if (page != previous && page.buffer != null && page.buffer != buffer) {
+                byte[] bytes = new byte[page.length];
+                ByteBuffer used = page.buffer.duplicate();
+                used.position(0);
+                used.get(bytes);
+                byte[] compressed = Lz4.compress(bytes);
+                if (compressed.length < bytes.length) {
+                    page.compressed = compressed;
+                    storage.release(page.buffer);
+                    page.buffer = null;
+                }
+            }
+            previous = page;
+        }
+    }
+
+    void release() {
+        if (pages != null) {
+            releasePages(0);
+            pages.clear();
+            buffer = null;
+            cache = null;
+        } else if (buffer != null) {
+            storage.release(buffer);
+            buffer = null;
+        }
+    }
+
+    private void releasePages(int from) {
+        Page previous = from == 0 ? null : pages.get(from - 1);
+        for (int i = from; i < pages.size(); i++) {
+            Page page = pages.get(i);
+            if (page != previous && page.buffer != null) {
+                storage.release(page.buffer);
+            }
+            previous = page;
+        }
+    }
+
+    /*
+     * a new current page, that takes the place of pageCount pages
+     */
+    private void addPage(int pageCount) {
+        long address = (long) pages.size() << pageShift;
+        int size = pageCount << pageShift;
+        if (address + size > Integer.MAX_VALUE) {
+            throw new IllegalStateException("A list can not hold more than 2GB of data");
+        }
+        buffer = storage.allocate(size);
+        buffer.limit(size); // the storage may hand out a larger one
+        Page page = new Page((int) address, size, buffer);
+        for (int i = 0; i < pageCount; i++) {
+            pages.add(page);
+        }
+        base = (int) address;
+    }
+
+    void storeNull() {
+        ensureFree(1);
+        buffer.put(position++, (byte) 0);
+    }
+
+    /*
+     * a null that takes the same room as a value in the fixed width layout
+     */
+    void storeNull(int width) {
+        ensureFree(width);
+        for (int i = 0; i < width; i++) {
+            buffer.put(position++, (byte) 0);
+        }
+    }
+
+    void storeString(String value) {
+        int utfLength = Utf8.encodedLength(value);
+        long type = ((long) (utfLength) << 1) + STRING_OFFSET;
+        ensureFree(Varint.getLength(type) + utfLength);
+        position += Varint.write(type, buffer, position);
+        position += Utf8.encode(value, buffer, position);
+    }
+
+    void storeDouble(double value) {
+        ensureFree(9);
+        buffer.put(position, DOUBLE_TYPE);
+        buffer.putDouble(position + 1, value);
+        position += 9;
+    }
+
+    void storeFloat(float value) {
+        ensureFree(5);
+        buffer.put(position, FLOAT_TYPE);
+        buffer.putFloat(position + 1, value);
+        position += 5;
+    }
+
+    /*
+     * Every integer number (byte, short, int, long) is stored as a variable length long:
+     * 0 and 1 are stored in the type byte only, otherwise the type byte denotes the nr of big-endian bytes that follow.
+     * The type is always < 128 so the varint is a single byte.
+     */
+    void storeLong(long value) {
+        if (value == 0) {
+            ensureFree(1);
+            buffer.put(position++, ZERO_TYPE);
+        } else if (value == 1) {
+            ensureFree(1);
+            buffer.put(position++, ONE_TYPE);
+        } else {
+            int length = getLengthOfByteEncoding(value);
+            ensureFree(length + 1);
+            buffer.put(position++, getIntegerType(length));
+            for (int i = 0; i < length; i++) {
+                buffer.put(position++, (byte) ((value >> (length - i - 1) * 8) & 0xFF));
+            }
+        }
+    }
+
+    /*
+     * For the fixed width layout: the value is always stored in length (1, 2, 4 or 8) bytes, so without the
+     * special types for 0 and 1. This is still readable by ValueReader.
+     */
+    void storeFixedLong(long value, int length) {
+        ensureFree(length + 1);
+        buffer.put(position++, getIntegerType(length));
+        for (int i = 0; i < length; i++) {
+            buffer.put(position++, (byte) ((value >> (length - i - 1) * 8) & 0xFF));
+        }
+    }
+
+    /*
+     * appends the data of another buffer in one bulk copy (not when paged, see appendElement)
+     */
+    void append(DataBuffer other) {
+        int length = other.position;
+        ensureFree(length);
+        copy(other.buffer, 0, length);
+    }
+
+    /*
+     * appends bytes [from, to) of source as one element, returns the address it starts at
+     */
+    int appendElement(ByteBuffer source, int from, int to) {
+        startElement();
+        ensureFree(to - from);
+        int address = getPosition();
+        copy(source, from, to - from);
+        return address;
+    }
+
+    private void copy(ByteBuffer source, int from, int length) {
+        ByteBuffer bytes = source.duplicate();
+        bytes.position(from).limit(from + length);
+        ByteBuffer target = buffer.duplicate();
+        target.position(position);
+        target.put(bytes);
+        position += length;
+    }
+
+    void ensureFree(int length) {
+        int capacity = pages == null ? buffer.capacity() : buffer.limit();
+        if (position + length > capacity) {
+            if (pages != null) {
+                nextPage(length);
+                return;
+            }
+            while (position + length > capacity) {
+                capacity = (int) (capacity * 1.5);
+            }
+            this.buffer = storage.grow(this.buffer, position, capacity);
+        }
+    }
+
+    /*
+     * continues on a new page, taking the unfinished element along
+     */
+    private void nextPage(int length) {
+        int carried = position - elementStart;
+        ByteBuffer unfinished = buffer.duplicate();
+        unfinished.position(elementStart).limit(position);
+        pages.get(base >>> pageShift).length = elementStart; // the page is full, only for compressing
+
+        addPage((carried + length + (1 << pageShift) - 1) >>> pageShift);
+        buffer.duplicate().put(unfinished);
+        elementStart = 0;
+        position = carried;
+    }
+
+    /*
+     * the bytes up to the position. When paged, the unused ends of the pages are included (with undefined content)
+     */
+    byte[] getData() {
+        byte[] bytes = new byte[getPosition()];
+        if (pages == null) {
+            ByteBuffer used = buffer.duplicate(); // works for direct buffers too
+            used.position(0);
+            used.get(bytes);
+            return bytes;
+        }
+        int address = 0;
+        while (address < bytes.length) {
+            Page page = pages.get(address >>> pageShift);
+            ByteBuffer used = getPage(address).duplicate();
+            used.position(0);
+            used.get(bytes, address, page.buffer == buffer ? position : page.length);
+            address += page.size;
+        }
+        return bytes;
+    }
+
+    /*
+     * One or more pages (for an element larger than a page), either as a buffer or compressed.
+     */
+    static final class Page {
+        final int address;
+        final int size; // in the address space
+        int length; // used, once full
+        ByteBuffer buffer; // null when compressed
+        byte[] compressed;
+        volatile ByteBuffer decompressed; // while in the cache
+        boolean referenced; // read since the cache last looked, see PageCache
+
+        Page(int address, int size, ByteBuffer buffer) {
+            this.address = address;
+            this.size = size;
+            this.buffer = buffer;
+        }
+    }
+
+    private static int getLengthOfByteEncoding(long value) {
+        long u;
+        if (value < 0) {
+            u = ~value;
+        } else {
+            u = value;
+        }
+        if (u <= Byte.MAX_VALUE) {
+            return 1;
+        } else if (u <= Short.MAX_VALUE) {
+            return 2;
+        } else if (u <= ContiguousList.MAX_24BITS) {
+            return 3;
+        } else if (u <= Integer.MAX_VALUE) {
+            return 4;
+        } else if (u <= ContiguousList.MAX_48BITS) {
+            return 6;
+        } else {
+            return 8;
+        }
+    }
+
+    private static byte getIntegerType(int bytesLength) {
+        if (bytesLength < 5) {
+            return (byte) bytesLength;
+        } else if (bytesLength < 7) {
+            return 5;
+        } else return 6;
+    }
+}
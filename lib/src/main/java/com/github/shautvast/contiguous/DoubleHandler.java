@@ -14,4 +14,9 @@ class DoubleHandler extends BuiltinTypeHandler<Double> {
     public void store(Double value, ContiguousList<?> list) {
         list.storeDouble(value);
     }
+
+    @Override
+    int getFixedWidth() {
+        return 9; // type + f64
+    }
 }
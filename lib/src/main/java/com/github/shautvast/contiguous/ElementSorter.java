@@ -0,0 +1,235 @@
+package com.github.shautvast.contiguous;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/*
+ * Determines the sorted order of the elements of a list, from the stored values (see ContiguousList.sortBy).
+ *
+ * The first key of every element is read once into a long, that sorts the same way as the value:
+ * integer numbers as they are, doubles with their sign bit flipped, Strings as their first 8 UTF-8 bytes
+ * and dictionary codes as the rank of the value in the dictionary. Only when those are equal (and they are not
+ * exact, or there are more keys) the stored values themselves are compared.
+ *
+ * The order is sorted with a merge sort, which is stable, on an int[] of element indices: apart from a few arrays
+ * nothing is allocated.
+ */
+final class ElementSorter {
+    private static final int INTEGER = 0;
+    private static final int DOUBLE = 1;
+    private static final int STRING = 2;
+    private static final int DICTIONARY = 3;
+
+    private static final int INSERTION_SORT_THRESHOLD = 32;
+
+    private final int[] leaves;
+    private final int[] kinds;
+    private final boolean[] descending;
+    private final int[][] ranks; // for the dictionary keys: the rank of every code
+    private final ContiguousList<?>.Cursor first;
+    private final ContiguousList<?>.Cursor second;
+
+    private long[] primary;
+    private boolean primaryIsExact;
+
+    ElementSorter(ContiguousList<?> list, SortKey[] keys) {
+        if (keys.length == 0) {
+            throw new IllegalArgumentException("Nothing to sort on");
+        }
+        this.leaves = new int[keys.length];
+        this.kinds = new int[keys.length];
+        this.descending = new boolean[keys.length];
+        this.ranks = new int[keys.length][];
+        for (int k = 0; k < keys.length; k++) {
+            int leaf = list.getLeafIndex(keys[k].getPropertyPath());
+            leaves[k] = leaf;
+            descending[k] = keys[k].isDescending();
+            BuiltinTypeHandler<?> handler = list.getBuiltinTypeHandlers().get(leaf);
+            StringDictionary dictionary = list.getDictionary(leaf);
+            if (dictionary != null) {
+                kinds[k] = DICTIONARY;
+                ranks[k] = rank(dictionary);
+            } else if (handler instanceof StringHandler) {
+                kinds[k] = STRING;
+            } else if (handler instanceof LongHandler || handler instanceof IntegerHandler
+                    || handler instanceof ShortHandler || handler instanceof ByteHandler) {
+                kinds[k] = INTEGER;
+            } else if (handler instanceof DoubleHandler || handler instanceof FloatHandler) {
+                kinds[k] = DOUBLE;
+            } else {
+                throw new IllegalArgumentException("Can not sort on " + keys[k].getPropertyPath() + " of type "
+                        + handler.getType().getName());
+            }
+        }
+        this.first = list.cursor();
+        this.second = list.cursor();
+    }
+
+    /*
+     * returns the element indices in sorted order
+     */
+    int[] sort(int size) {
+        primary = new long[size];
+        for (int i = 0; i < size; i++) {
+            primary[i] = primaryKey(i);
+        }
+        primaryIsExact = leaves.length == 1 && kinds[0] != STRING;
+
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        mergeSort(order, new int[size], 0, size);
+        return order;
+    }
+
+    private void mergeSort(int[] order, int[] scratch, int from, int to) {
+        if (to - from <= INSERTION_SORT_THRESHOLD) {
+            for (int i = from + 1; i < to; i++) {
+                int element = order[i];
+                int j = i - 1;
+                while (j >= from && compare(order[j], element) > 0) {
+                    order[j + 1] = order[j];
+                    j--;
+                }
+                order[j + 1] = element;
+            }
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        mergeSort(order, scratch, from, middle);
+        mergeSort(order, scratch, middle, to);
+        if (compare(order[middle - 1], order[middle]) <= 0) {
+            return; // already in order
+        }
+        System.arraycopy(order, from, scratch, from, to - from);
+        int left = from;
+        int right = middle;
+        for (int i = from; i < to; i++) {
+            // <= keeps equal elements in their order
+            if (right >= to || left < middle && compare(scratch[left], scratch[right]) <= 0) {
+                order[i] = scratch[left++];
+            } else {
+                order[i] = scratch[right++];
+            }
+        }
+    }
+
+    private int compare(int a, int b) {
+        int c = Long.compare(primary[a], primary[b]);
+        if (c != 0 || primaryIsExact && primary[a] != Long.MIN_VALUE) {
+            return c;
+        }
+        for (int k = 0; k < leaves.length; k++) {
+            c = compareValues(k, first.seek(a, leaves[k]), second.seek(b, leaves[k]));
+            if (c != 0) {
+                return c;
+            }
+        }
+        return 0;
+    }
+
+    /*
+     * null comes first, also when descending
+     */
+    private int compareValues(int key, ByteBuffer x, ByteBuffer y) {
+        boolean xIsNull = ValueReader.isNull(x);
+        boolean yIsNull = ValueReader.isNull(y);
+        if (xIsNull || yIsNull) {
+            return xIsNull == yIsNull ? 0 : xIsNull ? -1 : 1;
+        }
+        int c = compareNonNull(key, x, y);
+        return descending[key] ? -c : c;
+    }
+
+    private int compareNonNull(int key, ByteBuffer x, ByteBuffer y) {
+        switch (kinds[key]) {
+            case INTEGER:
+                return Long.compare(ValueReader.readLong(x), ValueReader.readLong(y));
+            case DOUBLE:
+                return Double.compare(ValueReader.readDouble(x), ValueReader.readDouble(y));
+            case DICTIONARY:
+                return Integer.compare(ranks[key][(int) ValueReader.readLong(x)], ranks[key][(int) ValueReader.readLong(y)]);
+            default:
+                return compareUtf8(x, y);
+        }
+    }
+
+    /*
+     * unsigned, byte by byte, which is the order of the code points
+     */
+    private static int compareUtf8(ByteBuffer x, ByteBuffer y) {
+        int xLength = (int) ((Varint.read(x) - DataBuffer.STRING_OFFSET) >> 1);
+        int yLength = (int) ((Varint.read(y) - DataBuffer.STRING_OFFSET) >> 1);
+        int xPosition = x.position();
+        int yPosition = y.position();
+        int length = Math.min(xLength, yLength);
+        for (int i = 0; i < length; i++) {
+            int c = (x.get(xPosition + i) & 0xFF) - (y.get(yPosition + i) & 0xFF);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return xLength - yLength;
+    }
+
+    /*
+     * Long.MIN_VALUE for null. A value can end up with that key too (the smallest ascending, the largest descending),
+     * which is fine: null and those values sort before all others, and compare tells them apart by the stored values
+     */
+    private long primaryKey(int index) {
+        ByteBuffer buffer = first.seek(index, leaves[0]);
+        long key;
+        if (ValueReader.isNull(buffer)) {
+            return Long.MIN_VALUE;
+        }
+        switch (kinds[0]) {
+            case INTEGER:
+                key = ValueReader.readLong(buffer);
+                break;
+            case DOUBLE:
+                key = sortableBits(ValueReader.readDouble(buffer));
+                break;
+            case DICTIONARY:
+                key = ranks[0][(int) ValueReader.readLong(buffer)];
+                break;
+            default:
+                key = utf8Prefix(buffer) ^ Long.MIN_VALUE; // unsigned to signed order
+        }
+        return descending[0] ? ~key : key;
+    }
+
+    /*
+     * a long that sorts like the double (as Double.compare does)
+     */
+    static long sortableBits(double value) {
+        long bits = Double.doubleToLongBits(value);
+        return bits ^ ((bits >> 63) & Long.MAX_VALUE); // negative numbers in reverse
+    }
+
+    private static long utf8Prefix(ByteBuffer buffer) {
+        int length = (int) ((Varint.read(buffer) - DataBuffer.STRING_OFFSET) >> 1);
+        int position = buffer.position();
+        long prefix = 0;
+        for (int i = 0; i < 8; i++) {
+            prefix = prefix << 8 | (i < length ? buffer.get(position + i) & 0xFF : 0);
+        }
+        return prefix;
+    }
+
+    /*
+     * the rank of every code, in the order of the values (code point order, like the Strings that are not encoded)
+     */
+    private static int[] rank(StringDictionary dictionary) {
+        Integer[] codes = new Integer[dictionary.size()];
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = i;
+        }
+        Arrays.sort(codes, (a, b) -> Utf8.compare(dictionary.get(a), dictionary.get(b))); // like compareUtf8
+        int[] ranks = new int[codes.length];
+        for (int rank = 0; rank < codes.length; rank++) {
+            ranks[codes[rank]] = rank;
+        }
+        return ranks;
+    }
+}
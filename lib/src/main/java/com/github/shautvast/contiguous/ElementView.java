@@ -0,0 +1,143 @@
+package com.github.shautvast.contiguous;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A cursor over the elements of a {@link ContiguousList}. The property values of the current element are read
+ * from the stored data when asked for, so iterating with a view does not create any elements or boxed values.
+ * <pre>
+ * PropertyHandle age = list.getPropertyHandle("age");
+ * ElementView&lt;Customer&gt; view = list.view();
+ * while (view.next()) {
+ *     total += view.getInt(age);
+ * }
+ * </pre>
+ * One view can be reused for any number of elements. It must not be used after the list is cleared or sorted.
+ * A view is not thread safe, but every thread can have its own view on the same list.
+ *
+ * @param <E> the element type
+ */
+public final class ElementView<E> {
+    private final ContiguousList<E> list;
+    private final ContiguousList<E>.Cursor cursor;
+
+    // row layout: where the values of the current element start, as far as they have been looked up
+    private final int[] positions;
+    private int knownPositions;
+
+    private int index = -1;
+
+    ElementView(ContiguousList<E> list, int leafCount) {
+        this.list = list;
+        this.cursor = list.cursor();
+        this.positions = new int[leafCount];
+    }
+
+    /**
+     * Makes the element at index the current element.
+     *
+     * @return this view
+     * @throws IndexOutOfBoundsException if there is no such element
+     */
+    public ElementView<E> moveTo(int index) {
+        list.checkIndex(index);
+        this.index = index;
+        this.knownPositions = 0;
+        return this;
+    }
+
+    /**
+     * Moves to the next element, or to the first one if the view has not been positioned yet.
+     *
+     * @return false if there is no next element, in which case the view stays where it was
+     */
+    public boolean next() {
+        if (index + 1 >= list.size()) {
+            return false;
+        }
+        moveTo(index + 1);
+        return true;
+    }
+
+    /**
+     * @return the index of the current element, -1 if the view has not been positioned yet
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @see ContiguousList#getInt(int, PropertyHandle)
+     */
+    public int getInt(PropertyHandle property) {
+        return (int) getLong(property);
+    }
+
+    /**
+     * @see ContiguousList#getLong(int, PropertyHandle)
+     */
+    public long getLong(PropertyHandle property) {
+        return ValueReader.readLong(seek(property));
+    }
+
+    /**
+     * @see ContiguousList#getDouble(int, PropertyHandle)
+     */
+    public double getDouble(PropertyHandle property) {
+        return ValueReader.readDouble(seek(property));
+    }
+
+    /**
+     * @see ContiguousList#getString(int, PropertyHandle)
+     */
+    public String getString(PropertyHandle property) {
+        return list.readString(seek(property), property.getLeaf());
+    }
+
+    /**
+     * @see ContiguousList#isNull(int, PropertyHandle)
+     */
+    public boolean isNull(PropertyHandle property) {
+        return ValueReader.isNull(seek(property));
+    }
+
+    /**
+     * Creates the current element, like {@link ContiguousList#get(int)}
+     */
+    public E get() {
+        checkPositioned();
+        return list.get(index);
+    }
+
+    /*
+     * In the row layout a value can only be found by skipping the ones before it.
+     * The positions found on the way are remembered, so every value of the current element is skipped at most once.
+     */
+    private ByteBuffer seek(PropertyHandle property) {
+        checkPositioned();
+        list.checkProperty(property);
+        int leaf = property.getLeaf();
+        if (list.canSeekDirectly()) {
+            return cursor.seek(index, leaf);
+        }
+        if (knownPositions == 0) {
+            positions[0] = list.getElementIndices().get(index);
+            knownPositions = 1;
+        }
+        if (leaf < knownPositions) {
+            return cursor.at(positions[leaf]);
+        }
+        ByteBuffer buffer = cursor.at(positions[knownPositions - 1]);
+        while (knownPositions <= leaf) {
+            ValueReader.skip(buffer);
+            positions[knownPositions++] = cursor.address();
+        }
+        return buffer;
+    }
+
+    private void checkPositioned() {
+        if (index < 0) {
+            throw new IllegalStateException("Not positioned, call moveTo or next first");
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.github.shautvast.contiguous;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A condition on the property values of an element, for {@link ContiguousList#filter(Filter)} and
+ * {@link ContiguousList#select(Filter)}. For instance
+ * <pre>
+ * list.filter(Filter.eq("address.country", "NL").and(Filter.lt("age", 18)))
+ * </pre>
+ * The conditions are evaluated on the stored values, without creating the elements: equality compares the
+ * stored bytes, numbers are compared after decoding just the number and Strings by comparing their UTF-8 bytes.
+ * <p>
+ * A null value only matches eq(path, null) and in(path, ..., null, ...).
+ */
+public abstract class Filter {
+
+    Filter() {
+    }
+
+    /**
+     * @param propertyPath the property, for instance "address.city"
+     * @param value        of the type of the property, or null. Any number for a number property
+     * @return a filter for the elements where the property has the value
+     */
+    public static Filter eq(String propertyPath, Object value) {
+        return new In(propertyPath, new Object[]{value});
+    }
+
+    /**
+     * @param propertyPath the property, for instance "address.city"
+     * @param values       of the type of the property, or null. Any number for a number property
+     * @return a filter for the elements where the property has one of the values
+     */
+    public static Filter in(String propertyPath, Object... values) {
+        return new In(propertyPath, values.clone());
+    }
+
+    /**
+     * @param propertyPath a number or String property
+     * @param value        a number for a number property, a String for a String property
+     * @return a filter for the elements where the property is less than the value
+     */
+    public static Filter lt(String propertyPath, Object value) {
+        return new Compare(propertyPath, value, false);
+    }
+
+    /**
+     * @param propertyPath a number or String property
+     * @param value        a number for a number property, a String for a String property
+     * @return a filter for the elements where the property is greater than the value
+     */
+    public static Filter gt(String propertyPath, Object value) {
+        return new Compare(propertyPath, value, true);
+    }
+
+    /**
+     * @param propertyPath a String property
+     * @param prefix       the start of the value
+     * @return a filter for the elements where the property starts with the prefix
+     */
+    public static Filter startsWith(String propertyPath, String prefix) {
+        return new StartsWith(propertyPath, prefix);
+    }
+
+    /**
+     * @return a filter for the elements that match both this filter and the other
+     */
+    public Filter and(Filter other) {
+        Filter self = this;
+        return new Filter() {
+            @Override
+            Matcher bind(ContiguousList<?> list) {
+                Matcher first = self.bind(list);
+                Matcher second = other.bind(list);
+                return (cursor, index) -> first.test(cursor, index) && second.test(cursor, index);
+            }
+        };
+    }
+
+    /**
+     * @return a filter for the elements that match this filter, the other or both
+     */
+    public Filter or(Filter other) {
+        Filter self = this;
+        return new Filter() {
+            @Override
+            Matcher bind(ContiguousList<?> list) {
+                Matcher first = self.bind(list);
+                Matcher second = other.bind(list);
+                return (cursor, index) -> first.test(cursor, index) || second.test(cursor, index);
+            }
+        };
+    }
+
+    /**
+     * @return a filter for the elements that do not match this filter
+     */
+    public Filter negate() {
+        Filter self = this;
+        return new Filter() {
+            @Override
+            Matcher bind(ContiguousList<?> list) {
+                Matcher matcher = self.bind(list);
+                return (cursor, index) -> !matcher.test(cursor, index);
+            }
+        };
+    }
+
+    /*
+     * resolves the properties and encodes the values for a list
+     */
+    abstract Matcher bind(ContiguousList<?> list);
+
+    interface Matcher {
+        boolean test(ContiguousList<?>.Cursor cursor, int index);
+    }
+
+    private static final class In extends Filter {
+        private final String propertyPath;
+        private final Object[] values;
+
+        In(String propertyPath, Object[] values) {
+            this.propertyPath = propertyPath;
+            this.values = values;
+        }
+
+        @Override
+        Matcher bind(ContiguousList<?> list) {
+            int leaf = list.getLeafIndex(propertyPath);
+            // values that no element can have (not in the dictionary) are left out
+            byte[][] encoded = Arrays.stream(values)
+                    .map(value -> list.encodeValue(leaf, value))
+                    .filter(bytes -> bytes != null)
+                    .toArray(byte[][]::new);
+            return (cursor, index) -> {
+                ByteBuffer buffer = cursor.seek(index, leaf);
+                for (byte[] value : encoded) {
+                    if (ContiguousList.valueEquals(buffer, value)) {
+                        return true;
+                    }
+                }
+                return false;
+            };
+        }
+    }
+
+    private static final class Compare extends Filter {
+        private final String propertyPath;
+        private final Object value;
+        private final boolean greater;
+
+        Compare(String propertyPath, Object value, boolean greater) {
+            this.propertyPath = propertyPath;
+            this.value = value;
+            this.greater = greater;
+        }
+
+        @Override
+        Matcher bind(ContiguousList<?> list) {
+            int leaf = list.getLeafIndex(propertyPath);
+            BuiltinTypeHandler<?> handler = list.getBuiltinTypeHandlers().get(leaf);
+            int sign = greater ? 1 : -1;
+            if (handler instanceof StringHandler && value instanceof String) {
+                StringDictionary dictionary = list.getDictionary(leaf);
+                if (dictionary != null) {
+                    String string = (String) value;
+                    return (cursor, index) -> {
+                        ByteBuffer buffer = cursor.seek(index, leaf);
+                        return !ValueReader.isNull(buffer)
+                                && Integer.signum(Utf8.compare(dictionary.get((int) ValueReader.readLong(buffer)), string)) == sign;
+                    };
+                }
+                byte[] utf8 = ((String) value).getBytes(StandardCharsets.UTF_8);
+                return (cursor, index) -> {
+                    ByteBuffer buffer = cursor.seek(index, leaf);
+                    return !ValueReader.isNull(buffer) && Integer.signum(compareUtf8(buffer, utf8)) == sign;
+                };
+            }
+            boolean integerProperty = handler instanceof LongHandler || handler instanceof IntegerHandler
+                    || handler instanceof ShortHandler || handler instanceof ByteHandler;
+            boolean integerValue = value instanceof Long || value instanceof Integer || value instanceof Short
+                    || value instanceof Byte;
+            if (integerProperty && integerValue) {
+                long number = ((Number) value).longValue();
+                return (cursor, index) -> {
+                    ByteBuffer buffer = cursor.seek(index, leaf);
+                    return !ValueReader.isNull(buffer) && Integer.signum(Long.compare(ValueReader.readLong(buffer), number)) == sign;
+                };
+            }
+            if ((integerProperty || handler instanceof DoubleHandler || handler instanceof FloatHandler)
+                    && value instanceof Number) {
+                double number = ((Number) value).doubleValue();
+                return (cursor, index) -> {
+                    ByteBuffer buffer = cursor.seek(index, leaf);
+                    return !ValueReader.isNull(buffer) && Integer.signum(Double.compare(ValueReader.readDouble(buffer), number)) == sign;
+                };
+            }
+            throw new IllegalArgumentException("Can not compare " + propertyPath + " of type "
+                    + handler.getType().getName() + " to " + value);
+        }
+
+        /*
+         * unsigned, byte by byte, which is the order of the code points
+         */
+        private static int compareUtf8(ByteBuffer buffer, byte[] value) {
+            int length = (int) ((Varint.read(buffer) - DataBuffer.STRING_OFFSET) >> 1);
+            int position = buffer.position();
+            for (int i = 0; i < Math.min(length, value.length); i++) {
+                int c = (buffer.get(position + i) & 0xFF) - (value[i] & 0xFF);
+                if (c != 0) {
+                    return c;
+                }
+            }
+            return length - value.length;
+        }
+    }
+
+    private static final class StartsWith extends Filter {
+        private final String propertyPath;
+        private final String prefix;
+
+        StartsWith(String propertyPath, String prefix) {
+            this.propertyPath = propertyPath;
+            this.prefix = prefix;
+        }
+
+        @Override
+        Matcher bind(ContiguousList<?> list) {
+            int leaf = list.getLeafIndex(propertyPath);
+            if (!(list.getBuiltinTypeHandlers().get(leaf) instanceof StringHandler)) {
+                throw new IllegalArgumentException("Property " + propertyPath + " is not a String");
+            }
+            StringDictionary dictionary = list.getDictionary(leaf);
+            if (dictionary != null) {
+                return (cursor, index) -> {
+                    ByteBuffer buffer = cursor.seek(index, leaf);
+                    return !ValueReader.isNull(buffer)
+                            && dictionary.get((int) ValueReader.readLong(buffer)).startsWith(prefix);
+                };
+            }
+            byte[] utf8 = prefix.getBytes(StandardCharsets.UTF_8);
+            return (cursor, index) -> {
+                ByteBuffer buffer = cursor.seek(index, leaf);
+                if (ValueReader.isNull(buffer)) {
+                    return false;
+                }
+                int length = (int) ((Varint.read(buffer) - DataBuffer.STRING_OFFSET) >> 1);
+                if (length < utf8.length) {
+                    return false;
+                }
+                int position = buffer.position();
+                for (int i = 0; i < utf8.length; i++) {
+                    if (buffer.get(position + i) != utf8[i]) {
+                        return false;
+                    }
+                }
+                return true;
+            };
+        }
+    }
+}
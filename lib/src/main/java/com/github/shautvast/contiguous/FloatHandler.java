@@ -11,4 +11,9 @@ class FloatHandler extends BuiltinTypeHandler<Float> {
     public void store(Float value, ContiguousList<?> list) {
         list.storeFloat(value);
     }
+
+    @Override
+    int getFixedWidth() {
+        return 5; // type + f32
+    }
 }
@@ -0,0 +1,180 @@
+package com.github.shautvast.contiguous;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/*
+ * A hash index on one property of a list (see ContiguousList.enableHashIndex): an open addressing table
+ * from the stored bytes of a value to the elements that have that value.
+ *
+ * Every distinct value takes one slot, with the hash of its bytes and the first and last element that have it,
+ * so finding those takes constant time, also for values that many elements have. The elements in between
+ * are chained in `next`, in index order. The values themselves are not copied: a slot is compared by reading
+ * the bytes of its first element from the list.
+ *
+ * Elements are added when the index is used, so adding to the list costs nothing extra. Because of that
+ * all methods are synchronized.
+ */
+final class HashIndex {
+    private static final int NONE = -1;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final ContiguousList<?> list;
+    private final int leaf;
+    private final ContiguousList<?>.Cursor cursor;
+    private final ContiguousList<?>.Cursor slotCursor; // for the value in a slot
+
+    private int[] hashes;
+    private int[] firsts; // NONE for an empty slot
+    private int[] lasts;
+    private int distinct;
+    private final IntList next = new IntList(); // per element, the next one with the same value or NONE
+    private int indexed; // the elements before this one are in the table
+
+    HashIndex(ContiguousList<?> list, int leaf) {
+        this.list = list;
+        this.leaf = leaf;
+        this.cursor = list.cursor();
+        this.slotCursor = list.cursor();
+        allocate(INITIAL_CAPACITY);
+    }
+
+    int getLeaf() {
+        return leaf;
+    }
+
+    /*
+     * the first element with the value (as stored), or -1
+     */
+    synchronized int first(byte[] value) {
+        int slot = find(value);
+        return slot == NONE ? -1 : firsts[slot];
+    }
+
+    /*
+     * the last element with the value (as stored), or -1
+     */
+    synchronized int last(byte[] value) {
+        int slot = find(value);
+        return slot == NONE ? -1 : lasts[slot];
+    }
+
+    /*
+     * the next element with the same value as element `index`, or -1
+     */
+    synchronized int next(int index) {
+        return next.get(index);
+    }
+
+    /*
+     * empties the index, it's built again when it's used. For when the elements change places
+     */
+    synchronized void reset() {
+        allocate(INITIAL_CAPACITY);
+        distinct = 0;
+        next.clear();
+        indexed = 0;
+    }
+
+    private int find(byte[] value) {
+        update();
+        ByteBuffer buffer = ByteBuffer.wrap(value);
+        int hash = hash(buffer, 0, value.length);
+        int mask = firsts.length - 1;
+        for (int slot = hash & mask; firsts[slot] != NONE; slot = (slot + 1) & mask) {
+            if (hashes[slot] == hash && equalsSlot(slot, buffer, 0, value.length)) {
+                return slot;
+            }
+        }
+        return NONE;
+    }
+
+    /*
+     * adds the elements that were added to the list since the last time
+     */
+    private void update() {
+        int size = list.size();
+        for (int index = indexed; index < size; index++) {
+            add(index);
+        }
+        indexed = size;
+    }
+
+    private void add(int index) {
+        ByteBuffer buffer = cursor.seek(index, leaf);
+        int position = buffer.position();
+        int length = list.valueLength(buffer, leaf);
+        int hash = hash(buffer, position, length);
+        int mask = firsts.length - 1;
+        int slot = hash & mask;
+        while (firsts[slot] != NONE) {
+            if (hashes[slot] == hash && equalsSlot(slot, buffer, position, length)) {
+                next.set(lasts[slot], index);
+                lasts[slot] = index;
+                next.add(NONE);
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        hashes[slot] = hash;
+        firsts[slot] = index;
+        lasts[slot] = index;
+        next.add(NONE);
+        if (++distinct * 2 > firsts.length) {
+            grow();
+        }
+    }
+
+    private boolean equalsSlot(int slot, ByteBuffer value, int position, int length) {
+        ByteBuffer stored = slotCursor.seek(firsts[slot], leaf);
+        int storedPosition = stored.position();
+        if (stored.limit() - storedPosition < length) {
+            return false;
+        }
+        // the type comes first, so if all bytes are the same, so is the length
+        for (int i = 0; i < length; i++) {
+            if (stored.get(storedPosition + i) != value.get(position + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * at most half of the slots is used, the stored hashes make moving cheap
+     */
+    private void grow() {
+        int[] oldHashes = hashes;
+        int[] oldFirsts = firsts;
+        int[] oldLasts = lasts;
+        allocate(oldFirsts.length * 2);
+        int mask = firsts.length - 1;
+        for (int i = 0; i < oldFirsts.length; i++) {
+            if (oldFirsts[i] != NONE) {
+                int slot = oldHashes[i] & mask;
+                while (firsts[slot] != NONE) {
+                    slot = (slot + 1) & mask;
+                }
+                hashes[slot] = oldHashes[i];
+                firsts[slot] = oldFirsts[i];
+                lasts[slot] = oldLasts[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        hashes = new int[capacity];
+        firsts = new int[capacity];
+        lasts = new int[capacity];
+        Arrays.fill(firsts, NONE);
+    }
+
+    static int hash(ByteBuffer buffer, int position, int length) {
+        int hash = 1;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + buffer.get(position + i);
+        }
+        hash *= 0x9E3779B9; // spreads the bits, the table uses the lowest ones
+        return hash ^ (hash >>> 16);
+    }
+}
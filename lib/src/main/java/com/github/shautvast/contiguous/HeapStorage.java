@@ -0,0 +1,19 @@
+package com.github.shautvast.contiguous;
+
+import java.nio.ByteBuffer;
+
+/*
+ * The default: heap buffers from the BufferPool
+ */
+class HeapStorage implements Storage {
+
+    @Override
+    public ByteBuffer allocate(int capacity) {
+        return BufferPool.heap().get(capacity);
+    }
+
+    @Override
+    public void release(ByteBuffer buffer) {
+        BufferPool.heap().release(buffer);
+    }
+}
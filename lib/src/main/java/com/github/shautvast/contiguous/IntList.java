@@ -0,0 +1,90 @@
+package com.github.shautvast.contiguous;
+
+import java.util.Arrays;
+
+/*
+ * Growable list of primitive ints, used to keep track of the element offsets in the data buffer.
+ *
+ * Compared to ArrayList<Integer> this saves about 16 bytes per element (on a 64-bit jvm with compressed oops):
+ * ArrayList<Integer> takes a 4 byte reference plus a 16 byte Integer object per element (only -128..127 are cached),
+ * while this takes 4 bytes per element. Reading a value also does not need unboxing.
+ *
+ * Grows by 1.5x, just like ArrayList. Not synchronized.
+ *
+ * MappedIntList keeps the values in a file instead.
+ */
+class IntList {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private int[] values;
+    private int size;
+
+    IntList() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    IntList(int capacity) {
+        values = new int[Math.max(capacity, 1)];
+    }
+
+    void add(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, values.length + (values.length >> 1) + 1);
+        }
+        values[size++] = value;
+    }
+
+    /*
+     * adds the values of other from index `from` on, each plus delta. For offsets that move along with their data.
+     */
+    void addAll(IntList other, int from, int delta) {
+        int count = other.size - from;
+        if (count <= 0) {
+            return;
+        }
+        if (size + count > values.length) {
+            values = Arrays.copyOf(values, Math.max(size + count, values.length + (values.length >> 1) + 1));
+        }
+        for (int i = 0; i < count; i++) {
+            values[size++] = other.values[from + i] + delta;
+        }
+    }
+
+    int get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + " >= " + size);
+        }
+        return values[index];
+    }
+
+    void set(int index, int value) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + " >= " + size);
+        }
+        values[index] = value;
+    }
+
+    /*
+     * puts the values in a new order, per group of `group` values: group i becomes what was group order[i].
+     * Values after the groups (like the end offset after the element offsets) stay where they are.
+     */
+    void permute(int[] order, int group) {
+        int[] permuted = new int[order.length * group];
+        for (int i = 0; i < order.length; i++) {
+            System.arraycopy(values, order[i] * group, permuted, i * group, group);
+        }
+        System.arraycopy(permuted, 0, values, 0, permuted.length);
+    }
+
+    int[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        size = 0;
+    }
+}
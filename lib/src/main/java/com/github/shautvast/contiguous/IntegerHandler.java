@@ -12,6 +12,11 @@ class IntegerHandler extends BuiltinTypeHandler<Integer> {
         list.storeInteger(value);
     }
 
+    @Override
+    int getFixedWidth() {
+        return 5; // type + 4 bytes
+    }
+
     /*
      * Every integer number is considered a (variable length) long in the storage
      * This method makes sure it's cast back to the required type (same for byte and short)
@@ -0,0 +1,271 @@
+package com.github.shautvast.contiguous;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/*
+ * Writes the elements of a list as a UTF-8 JSON array, straight from the stored data.
+ *
+ * Stored strings are already UTF-8, so they are copied byte for byte (escaping where needed) and integer
+ * numbers are written digit by digit. No Strings are created, except for floating point numbers.
+ *
+ * Everything between two values (property names, braces, separators) only depends on the element type,
+ * so it is encoded once: prefixes[leaf] is what comes before the value of leaf, suffix what comes after the last one.
+ * For {"name": "x", "address": {"city": "y"}} the prefixes are `{"name": ` and `, "address": {"city": `
+ * and the suffix is `}}`.
+ *
+ * Values of dictionary encoded properties are stored as a code, for which the dictionary has the JSON.
+ */
+final class JsonWriter {
+
+    private static final byte[] NULL = {'n', 'u', 'l', 'l'};
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private final byte[][] prefixes;
+    private final byte[] suffix;
+    private final boolean[] quoted; // only real strings, a BigDecimal is also stored as a string
+
+    JsonWriter(TypeHandler rootHandler, List<BuiltinTypeHandler<?>> leaves) {
+        this.prefixes = new byte[leaves.size()][];
+        this.quoted = new boolean[leaves.size()];
+        for (int i = 0; i < leaves.size(); i++) {
+            quoted[i] = leaves.get(i) instanceof StringHandler;
+        }
+        StringBuilder template = new StringBuilder();
+        if (rootHandler instanceof CompoundTypeHandler) {
+            template.append('{');
+            addPrefixes((CompoundTypeHandler) rootHandler, template, 0);
+            template.append('}');
+        } else {
+            prefixes[0] = new byte[0];
+        }
+        this.suffix = template.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /*
+     * the template contains everything since the previous value, returns the next leaf index
+     */
+    private int addPrefixes(CompoundTypeHandler compoundType, StringBuilder template, int leaf) {
+        boolean first = true;
+        for (TypeHandler property : compoundType.getProperties()) {
+            if (!first) {
+                template.append(", ");
+            }
+            first = false;
+            template.append('"').append(escape(property.getName())).append("\": ");
+            if (property instanceof BuiltinTypeHandler) {
+                prefixes[leaf++] = template.toString().getBytes(StandardCharsets.UTF_8);
+                template.setLength(0);
+            } else {
+                template.append('{');
+                leaf = addPrefixes((CompoundTypeHandler) property, template, leaf);
+                template.append('}');
+            }
+        }
+        return leaf;
+    }
+
+    private static String escape(String name) {
+        return name.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    void write(ContiguousList<?> list, OutputStream stream) throws IOException {
+        Output out = new Output(stream, 8192);
+        ContiguousList<?>.Cursor cursor = list.cursor();
+        out.put((byte) '[');
+        for (int index = 0; index < list.size(); index++) {
+            if (index > 0) {
+                out.put((byte) ',');
+            }
+            writeElement(list, cursor, index, out);
+        }
+        out.put((byte) ']');
+        out.flush();
+    }
+
+    /*
+     * one element, for a caller that writes the array itself. The buffer is small, as elements usually are
+     */
+    void write(ContiguousList<?> list, int index, OutputStream stream) throws IOException {
+        Output out = new Output(stream, 256);
+        writeElement(list, list.cursor(), index, out);
+        out.flush();
+    }
+
+    private void writeElement(ContiguousList<?> list, ContiguousList<?>.Cursor cursor, int index, Output out) throws IOException {
+        for (int leaf = 0; leaf < prefixes.length; leaf++) {
+            out.put(prefixes[leaf]);
+            ByteBuffer buffer = cursor.seekNext(index, leaf);
+            StringDictionary dictionary = list.getDictionary(leaf);
+            if (dictionary != null && !ValueReader.isNull(buffer)) {
+                out.put(dictionary.getJson((int) ValueReader.readLong(buffer)));
+            } else {
+                writeValue(out, buffer, quoted[leaf]);
+            }
+        }
+        out.put(suffix);
+    }
+
+    /*
+     * leaves the buffer positioned after the value, because in the row layout the next value is read from there
+     */
+    private static void writeValue(Output out, ByteBuffer buffer, boolean quoted) throws IOException {
+        int start = buffer.position();
+        long type = Varint.read(buffer);
+        if (type == 0) {
+            out.put(NULL);
+        } else if (type <= 6 || type == DataBuffer.ZERO_TYPE || type == DataBuffer.ONE_TYPE) {
+            buffer.position(start);
+            out.putLong(ValueReader.readLong(buffer));
+        } else if (type == DataBuffer.DOUBLE_TYPE) {
+            out.putAscii(Double.toString(buffer.getDouble()));
+        } else if (type == DataBuffer.FLOAT_TYPE) {
+            out.putAscii(Float.toString(buffer.getFloat()));
+        } else if (type >= DataBuffer.STRING_OFFSET && type % 2 == 1) {
+            int length = (int) ((type - DataBuffer.STRING_OFFSET) >> 1);
+            int position = buffer.position();
+            if (quoted) {
+                out.put((byte) '"');
+                putEscaped(out, buffer, position, position + length);
+                out.put((byte) '"');
+            } else {
+                for (int i = position; i < position + length; i++) {
+                    out.put(buffer.get(i));
+                }
+            }
+            buffer.position(position + length);
+        } else {
+            // blob, not written by any of the handlers
+            buffer.position(start);
+            out.putAscii(String.valueOf(ValueReader.read(buffer)));
+        }
+    }
+
+    /*
+     * a String as it appears in JSON, quoted and escaped, in UTF-8
+     */
+    static byte[] quote(String value) {
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(utf8.length + 2);
+        Output out = new Output(bytes, 256);
+        try {
+            out.put((byte) '"');
+            putEscaped(out, ByteBuffer.wrap(utf8), 0, utf8.length);
+            out.put((byte) '"');
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // not for a ByteArrayOutputStream
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void putEscaped(Output out, ByteBuffer buffer, int from, int to) throws IOException {
+        for (int i = from; i < to; i++) {
+            byte b = buffer.get(i);
+            if (b == '"' || b == '\\') {
+                out.put((byte) '\\');
+                out.put(b);
+            } else if (b >= 0 && b < 0x20) { // control characters (multibyte UTF-8 is negative)
+                if (b == '\n') {
+                    out.put((byte) '\\');
+                    out.put((byte) 'n');
+                } else if (b == '\r') {
+                    out.put((byte) '\\');
+                    out.put((byte) 'r');
+                } else if (b == '\t') {
+                    out.put((byte) '\\');
+                    out.put((byte) 't');
+                } else {
+                    out.put((byte) '\\');
+                    out.put((byte) 'u');
+                    out.put((byte) '0');
+                    out.put((byte) '0');
+                    out.put(HEX[b >> 4]);
+                    out.put(HEX[b & 0xf]);
+                }
+            } else {
+                out.put(b);
+            }
+        }
+    }
+
+    /*
+     * buffers the output, so the stream is not called for every byte
+     */
+    private static final class Output {
+        private final OutputStream stream;
+        private final byte[] buffer;
+        private int count;
+
+        Output(OutputStream stream, int size) {
+            this.stream = stream;
+            this.buffer = new byte[size];
+        }
+
+        void putLong(long value) throws IOException {
+            if (value == Long.MIN_VALUE) {
+                putAscii(Long.toString(value)); // can't negate
+                return;
+            }
+            if (value < 0) {
+                put((byte) '-');
+                value = -value;
+            }
+            ensureFree(19);
+            int length = 1;
+            for (long v = value / 10; v > 0; v /= 10) {
+                length++;
+            }
+            for (int i = count + length - 1; i >= count; i--) {
+                buffer[i] = (byte) ('0' + value % 10);
+                value /= 10;
+            }
+            count += length;
+        }
+
+        void putAscii(String value) throws IOException {
+            for (int i = 0; i < value.length(); i++) {
+                put((byte) value.charAt(i));
+            }
+        }
+
+        void put(byte[] bytes) throws IOException {
+            if (bytes.length > buffer.length - count) {
+                stream.write(buffer, 0, count);
+                count = 0;
+                if (bytes.length > buffer.length) {
+                    stream.write(bytes);
+                    return;
+                }
+            }
+            System.arraycopy(bytes, 0, buffer, count, bytes.length);
+            count += bytes.length;
+        }
+
+        void put(byte b) throws IOException {
+            if (count == buffer.length) {
+                stream.write(buffer, 0, count);
+                count = 0;
+            }
+            buffer[count++] = b;
+        }
+
+        void ensureFree(int length) throws IOException {
+            if (buffer.length - count < length) {
+                stream.write(buffer, 0, count);
+                count = 0;
+            }
+        }
+
+        void flush() throws IOException {
+            stream.write(buffer, 0, count);
+            count = 0;
+            stream.flush();
+        }
+    }
+}
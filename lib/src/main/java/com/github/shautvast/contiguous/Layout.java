@@ -0,0 +1,25 @@
+package com.github.shautvast.contiguous;
+
+/**
+ * How the elements of a {@link ContiguousList} are laid out in memory.
+ */
+public enum Layout {
+    /**
+     * The default. All values of an element are stored next to each other, element after element.
+     * Best for reading whole elements, like in get() or getAsJson().
+     */
+    ROW,
+
+    /**
+     * Every (leaf) property of the element type gets its own buffer (a column), struct-of-arrays style.
+     * Best for scans over one or a few properties, because the other properties are not touched.
+     */
+    COLUMNAR,
+
+    /**
+     * Only for element types that consist of fixed size numbers only (byte, short, int, long, float, double
+     * and their wrappers). Every value is stored in the same nr of bytes, so element i starts at i * stride
+     * and every property is at a fixed offset from there. Random access needs no decoding and no element index.
+     */
+    FIXED_WIDTH
+}
@@ -11,4 +11,9 @@ class LongHandler extends BuiltinTypeHandler<Long> {
     public void store(Long value, ContiguousList<?> list) {
         list.storeLong(value);
     }
+
+    @Override
+    int getFixedWidth() {
+        return 9; // type + 8 bytes
+    }
 }
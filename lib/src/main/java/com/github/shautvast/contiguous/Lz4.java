@@ -0,0 +1,141 @@
+package com.github.shautvast.contiguous;
+
+import java.util.Arrays;
+
+/*
+ * Block compression in the LZ4 block format (https://github.com/lz4/lz4/blob/dev/doc/lz4_Block_format.md),
+ * in plain java, for the pages of DataBuffer.
+ *
+ * A block is a series of sequences: a token (high 4 bits: number of literals, low 4 bits: match length - 4),
+ * more length bytes if a length is 15 or more, the literals, and a 2 byte little endian offset back to the match.
+ * The last sequence has only literals. Matches are found through a hash table of the 4 byte values seen so far,
+ * without looking further than the latest occurrence: fast, with a reasonable ratio for the repetitive data
+ * of a list (type bytes, common strings).
+ */
+final class Lz4 {
+    private static final int MIN_MATCH = 4;
+    private static final int LAST_LITERALS = 5; // the format requires the last 5 bytes to be literals
+    private static final int MATCH_FIND_LIMIT = 12; // and the last match to start 12 bytes before the end
+    private static final int MAX_OFFSET = 65535;
+    private static final int HASH_LOG = 14;
+
+    private Lz4() {
+    }
+
+    static byte[] compress(byte[] source) {
+        int length = source.length;
+        byte[] target = new byte[length + length / 255 + 16]; // the worst case: all literals
+        int[] table = new int[1 << HASH_LOG]; // position + 1 of the latest occurrence, 0 for none
+        int anchor = 0; // start of the literals that have not been written
+        int t = 0;
+        int matchLimit = length - LAST_LITERALS;
+        int position = 0;
+        while (position < length - MATCH_FIND_LIMIT) {
+            int value = readInt(source, position);
+            int hash = (value * -1640531535) >>> (32 - HASH_LOG);
+            int match = table[hash] - 1;
+            table[hash] = position + 1;
+            if (match < 0 || position - match > MAX_OFFSET || readInt(source, match) != value) {
+                position++;
+                continue;
+            }
+            int matchLength = MIN_MATCH;
+            while (position + matchLength < matchLimit && source[position + matchLength] == source[match + matchLength]) {
+                matchLength++;
+            }
+            t = writeSequence(target, t, source, anchor, position - anchor, position - match, matchLength);
+            position += matchLength;
+            anchor = position;
+        }
+        t = writeLiterals(target, t, source, anchor, length - anchor);
+        return Arrays.copyOf(target, t);
+    }
+
+    private static int writeSequence(byte[] target, int t, byte[] source, int from, int literals, int offset, int matchLength) {
+        int token = t;
+        t = writeLiterals(target, t, source, from, literals);
+        target[t++] = (byte) offset;
+        target[t++] = (byte) (offset >>> 8);
+        int length = matchLength - MIN_MATCH;
+        if (length >= 15) {
+            target[token] |= 15;
+            t = writeLength(target, t, length - 15);
+        } else {
+            target[token] |= (byte) length;
+        }
+        return t;
+    }
+
+    /*
+     * writes the token (with the number of literals, match length 0) and the literals
+     */
+    private static int writeLiterals(byte[] target, int t, byte[] source, int from, int literals) {
+        if (literals >= 15) {
+            target[t++] = (byte) (15 << 4);
+            t = writeLength(target, t, literals - 15);
+        } else {
+            target[t++] = (byte) (literals << 4);
+        }
+        System.arraycopy(source, from, target, t, literals);
+        return t + literals;
+    }
+
+    private static int writeLength(byte[] target, int t, int length) {
+        while (length >= 255) {
+            target[t++] = (byte) 255;
+            length -= 255;
+        }
+        target[t++] = (byte) length;
+        return t;
+    }
+
+    /*
+     * length is the length of the original data
+     */
+    static byte[] decompress(byte[] source, int length) {
+        byte[] target = new byte[length];
+        int s = 0;
+        int t = 0;
+        while (true) {
+            int token = source[s++] & 0xFF;
+            int literals = token >>> 4;
+            if (literals == 15) {
+                int b;
+                do {
+                    b = source[s++] & 0xFF;
+                    literals += b;
+                } while (b == 255);
+            }
+            System.arraycopy(source, s, target, t, literals);
+            s += literals;
+            t += literals;
+            if (s == source.length) {
+                return target;
+            }
+            int offset = (source[s] & 0xFF) | (source[s + 1] & 0xFF) << 8;
+            s += 2;
+            int matchLength = token & 15;
+            if (matchLength == 15) {
+                int b;
+                do {
+                    b = source[s++] & 0xFF;
+                    matchLength += b;
+                } while (b == 255);
+            }
+            matchLength += MIN_MATCH;
+            int match = t - offset;
+            if (offset >= matchLength) {
+                System.arraycopy(target, match, target, t, matchLength);
+            } else {
+                for (int i = 0; i < matchLength; i++) { // overlapping, repeats the last `offset` bytes
+                    target[t + i] = target[match + i];
+                }
+            }
+            t += matchLength;
+        }
+    }
+
+    private static int readInt(byte[] bytes, int i) {
+        return (bytes[i] & 0xFF) | (bytes[i + 1] & 0xFF) << 8 | (bytes[i + 2] & 0xFF) << 16 | (bytes[i + 3] & 0xFF) << 24;
+    }
+}
@@ -0,0 +1,217 @@
+package com.github.shautvast.contiguous;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A {@link ContiguousList} that keeps its data in a memory-mapped file.
+ * <p>
+ * The list can be larger than the heap and, because the operating system takes care of the paging,
+ * processes on the same host that open the same file share the memory.
+ * <p>
+ * Opening an existing file gives a list that is readable right away, without adding the elements again, and without
+ * reading anything: the data and the element offsets are read through the mapping when they are used.
+ * The format of the element data is the same as that of the regular list.
+ * <p>
+ * The element offsets are kept in a second file, next to the first, with ".offsets" appended to its name.
+ * File layout:
+ * <pre>
+ * header: magic, version, hash of the element type name, size, length of the element data (5 ints)
+ * element data
+ * </pre>
+ * and the offsets file has size+1 ints. Only one process should open the files for writing.
+ * Use {@link #openReadOnly(Class, Path)} for readers.
+ * <p>
+ * {@link #flush()} and {@link #close()} persist the added elements by writing the header. Adding only appends to
+ * both files, so when the process dies the files still hold what was flushed last. Clearing, sorting and compacting
+ * do change the files in place, so after those the files can't be opened until the list is flushed again.
+ */
+public class MappedContiguousList<E> extends ContiguousList<E> {
+
+    private static final int MAGIC = 0x434c5354; // CLST
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 20;
+
+    private final Class<E> type;
+    private final boolean readOnly;
+    private final MappedIntList offsets;
+    private boolean changedInPlace; // since the last flush, see invalidate
+
+    /**
+     * Opens the file, or creates it if it does not exist.
+     *
+     * @param type the element type, must be the same as the one used to create the file
+     * @param file the file that contains the data
+     * @throws IOException when the file can't be opened
+     */
+    public MappedContiguousList(Class<E> type, Path file) throws IOException {
+        this(type, file, false);
+    }
+
+    private MappedContiguousList(Class<E> type, Path file, boolean readOnly) throws IOException {
+        super(type, new MappedStorage(open(file, readOnly), HEADER_SIZE, readOnly), Layout.ROW,
+                new MappedIntList(open(offsetsFile(file), readOnly), readOnly));
+        this.type = type;
+        this.readOnly = readOnly;
+        this.offsets = (MappedIntList) getElementIndices();
+        readHeader();
+    }
+
+    /**
+     * Opens an existing file for reading only. Changing the list throws a {@link ReadOnlyBufferException}.
+     *
+     * @param type the element type, must be the same as the one used to create the file
+     * @param file the file that contains the data
+     * @throws IOException when the file can't be opened
+     */
+    public static <E> MappedContiguousList<E> openReadOnly(Class<E> type, Path file) throws IOException {
+        return new MappedContiguousList<>(type, file, true);
+    }
+
+    private static FileChannel open(Path file, boolean readOnly) throws IOException {
+        if (readOnly) {
+            return FileChannel.open(file, StandardOpenOption.READ);
+        }
+        return FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+    }
+
+    private static Path offsetsFile(Path file) {
+        return file.resolveSibling(file.getFileName() + ".offsets");
+    }
+
+    private void readHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        getChannel().read(header, 0);
+        int magic = header.getInt(0);
+        if (magic == 0) {
+            // new file
+            if (readOnly) {
+                throw new IllegalArgumentException("file is empty");
+            }
+            offsets.add(0); // index of first element
+            return;
+        }
+        if (magic != MAGIC || header.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("not a (compatible) ContiguousList file");
+        }
+        if (header.getInt(8) != type.getName().hashCode()) {
+            throw new IllegalArgumentException("file does not contain elements of type " + type.getName());
+        }
+        int size = header.getInt(12);
+        if (size < 0) {
+            throw new IllegalArgumentException("list was cleared, sorted or compacted and not flushed afterwards");
+        }
+        restore(size, header.getInt(16));
+        offsets.restore(size + 1);
+    }
+
+    /**
+     * Not supported, because the dictionary would not be in the file.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public void enableDictionary(String propertyPath) {
+        throw new UnsupportedOperationException("Dictionaries are not stored in the file");
+    }
+
+    /**
+     * Forces the data and the offsets to the storage device, and then writes the header that makes them count.
+     */
+    public void flush() {
+        if (readOnly) {
+            return;
+        }
+        ((MappedByteBuffer) getBuffer()).force();
+        offsets.force();
+        writeHeader(size(), getBufferPosition());
+        changedInPlace = false;
+    }
+
+    /**
+     * Changes the files in place, so they can't be opened until the list is flushed.
+     */
+    @Override
+    public void clear() {
+        invalidate();
+        super.clear();
+    }
+
+    /**
+     * Changes the offsets file in place, so the files can't be opened until the list is flushed.
+     */
+    @Override
+    public void sortBy(SortKey... keys) {
+        invalidate();
+        super.sortBy(keys);
+    }
+
+    /**
+     * Changes the files in place, so they can't be opened until the list is flushed.
+     */
+    @Override
+    public void compact() {
+        invalidate();
+        super.compact();
+    }
+
+    /*
+     * Marks the header, before what it describes is overwritten. Otherwise a process that dies before the next flush
+     * would leave a header that looks fine, with other data.
+     */
+    private void invalidate() {
+        if (readOnly) {
+            throw new ReadOnlyBufferException();
+        }
+        if (!changedInPlace) {
+            writeHeader(-1, 0);
+            changedInPlace = true;
+        }
+    }
+
+    private void writeHeader(int size, int dataLength) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putInt(type.getName().hashCode()).putInt(size).putInt(dataLength);
+        header.flip();
+        try {
+            getChannel().write(header, 0);
+            getChannel().force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Flushes, unmaps and closes the files, which are truncated to the actual length of the data.
+     */
+    @Override
+    public void close() {
+        FileChannel channel = getChannel();
+        if (!channel.isOpen()) {
+            return;
+        }
+        flush();
+        long length = HEADER_SIZE + getBufferPosition();
+        super.close();
+        offsets.close();
+        try {
+            if (!readOnly) {
+                // only after unmapping. The mapped region is larger because the buffer grows in steps
+                channel.truncate(length);
+            }
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private FileChannel getChannel() {
+        return ((MappedStorage) getStorage()).getChannel();
+    }
+}
@@ -0,0 +1,142 @@
+package com.github.shautvast.contiguous;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.nio.channels.FileChannel;
+
+/*
+ * The element offsets of a MappedContiguousList, in a file of their own. Values are read from the mapping,
+ * so opening a file reads nothing, however many elements it has.
+ *
+ * The file is only appended to while adding (extend sets the last value again, but to the same value), so the
+ * values that were flushed stay intact until the list is cleared, sorted or compacted.
+ *
+ * Grows by mapping a larger region of the file, so nothing is copied.
+ */
+final class MappedIntList extends IntList {
+    private static final int MIN_CAPACITY = 4096; // bytes
+
+    private final FileChannel channel;
+    private final boolean readOnly;
+    private MappedByteBuffer buffer;
+    private int size;
+
+    MappedIntList(FileChannel channel, boolean readOnly) {
+        super(0); // the array is not used
+        this.channel = channel;
+        this.readOnly = readOnly;
+        try {
+            this.buffer = readOnly
+                    ? channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()) // can't map beyond the end
+                    : channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(channel.size(), MIN_CAPACITY));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /*
+     * the number of values that are valid, according to the header of the list
+     */
+    void restore(int size) {
+        if ((long) size << 2 > buffer.capacity()) {
+            throw new IllegalArgumentException("The offsets file has fewer than " + size + " offsets");
+        }
+        this.size = size;
+    }
+
+    @Override
+    void add(int value) {
+        if (readOnly) {
+            throw new ReadOnlyBufferException();
+        }
+        if ((size + 1) << 2 > buffer.capacity()) {
+            grow();
+        }
+        buffer.putInt(size++ << 2, value);
+    }
+
+    @Override
+    void addAll(IntList other, int from, int delta) {
+        for (int i = from; i < other.size(); i++) {
+            add(other.get(i) + delta);
+        }
+    }
+
+    @Override
+    int get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + " >= " + size);
+        }
+        return buffer.getInt(index << 2);
+    }
+
+    @Override
+    void set(int index, int value) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + " >= " + size);
+        }
+        buffer.putInt(index << 2, value);
+    }
+
+    @Override
+    void permute(int[] order, int group) {
+        int[] values = toArray();
+        for (int i = 0; i < order.length; i++) {
+            for (int j = 0; j < group; j++) {
+                buffer.putInt((i * group + j) << 2, values[order[i] * group + j]);
+            }
+        }
+    }
+
+    @Override
+    int[] toArray() {
+        int[] values = new int[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = buffer.getInt(i << 2);
+        }
+        return values;
+    }
+
+    @Override
+    int size() {
+        return size;
+    }
+
+    @Override
+    void clear() {
+        size = 0;
+    }
+
+    private void grow() {
+        try {
+            MappedByteBuffer grown = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) buffer.capacity() << 1);
+            OffHeapStorage.free(buffer); // unmaps
+            buffer = grown;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    void force() {
+        if (!readOnly) {
+            buffer.force();
+        }
+    }
+
+    /*
+     * unmaps and closes the file, which is truncated to the values in use
+     */
+    void close() {
+        OffHeapStorage.free(buffer);
+        try {
+            if (!readOnly) {
+                channel.truncate((long) size << 2);
+            }
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
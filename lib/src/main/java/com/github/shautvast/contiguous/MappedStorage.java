@@ -0,0 +1,60 @@
+package com.github.shautvast.contiguous;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/*
+ * Maps the data region of a file (everything after the header) into memory.
+ *
+ * Growing means mapping a larger region of the same file, so nothing is copied.
+ * The file itself is opened and closed by MappedContiguousList.
+ */
+class MappedStorage implements Storage {
+    private final FileChannel channel;
+    private final long offset;
+    private final boolean readOnly;
+
+    MappedStorage(FileChannel channel, long offset, boolean readOnly) {
+        this.channel = channel;
+        this.offset = offset;
+        this.readOnly = readOnly;
+    }
+
+    @Override
+    public ByteBuffer allocate(int capacity) {
+        try {
+            long existing = Math.max(channel.size() - offset, 0);
+            if (readOnly) {
+                // can't map beyond the end of the file
+                return channel.map(FileChannel.MapMode.READ_ONLY, offset, existing);
+            }
+            return channel.map(FileChannel.MapMode.READ_WRITE, offset, Math.max(capacity, existing));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public ByteBuffer grow(ByteBuffer buffer, int length, int capacity) {
+        // the data is in the file already
+        ByteBuffer newBuffer = allocate(capacity);
+        release(buffer);
+        return newBuffer;
+    }
+
+    @Override
+    public void release(ByteBuffer buffer) {
+        OffHeapStorage.free(buffer); // unmaps
+    }
+
+    @Override
+    public boolean isOffHeap() {
+        return true;
+    }
+
+    FileChannel getChannel() {
+        return channel;
+    }
+}
@@ -0,0 +1,63 @@
+package com.github.shautvast.contiguous;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+
+/*
+ * Direct (off-heap) buffers.
+ *
+ * The jdk only frees the memory of a direct buffer after it has been garbage collected, which for a long-lived
+ * list can be never. So release() frees it right away using sun.misc.Unsafe.invokeCleaner (available since jdk 9).
+ * If that is not available (it's in jdk.unsupported after all) we fall back to leaving it to the garbage collector.
+ *
+ * (java.lang.foreign would be the modern way, but it's not final in our java version.)
+ */
+class OffHeapStorage implements Storage {
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafe = theUnsafe.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (Exception e) {
+            // ok, gc will clean up
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    @Override
+    public ByteBuffer allocate(int capacity) {
+        return ByteBuffer.allocateDirect(capacity);
+    }
+
+    @Override
+    public void release(ByteBuffer buffer) {
+        free(buffer);
+    }
+
+    @Override
+    public boolean isOffHeap() {
+        return true;
+    }
+
+    /*
+     * frees the memory of a direct buffer, or unmaps it if it's a MappedByteBuffer
+     */
+    static void free(ByteBuffer buffer) {
+        if (INVOKE_CLEANER != null && buffer.isDirect()) {
+            try {
+                INVOKE_CLEANER.invoke(UNSAFE, buffer);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.github.shautvast.contiguous;
+
+import java.nio.ByteBuffer;
+
+/*
+ * Keeps the most recently read compressed pages of a DataBuffer decompressed, at most `capacity` of them.
+ * A page that was evicted is simply decompressed again when it is read.
+ *
+ * Uses the clock (second chance) algorithm: reading a cached page only sets its referenced flag, so that does not
+ * lock. When a page has to go, the hand passes over the pages and evicts the first one that was not read since
+ * the previous pass.
+ *
+ * Readers that still have an evicted page keep using it, that's safe because pages don't change once compressed.
+ */
+final class PageCache {
+    private final DataBuffer.Page[] pages;
+    private int hand;
+
+    PageCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("At least one page must be cached");
+        }
+        this.pages = new DataBuffer.Page[capacity];
+    }
+
+    int getCapacity() {
+        return pages.length;
+    }
+
+    synchronized ByteBuffer load(DataBuffer.Page page) {
+        ByteBuffer buffer = page.decompressed;
+        if (buffer != null) {
+            return buffer; // another thread was first
+        }
+        while (pages[hand] != null && pages[hand].referenced) {
+            pages[hand].referenced = false;
+            hand = (hand + 1) % pages.length;
+        }
+        if (pages[hand] != null) {
+            pages[hand].decompressed = null;
+        }
+        buffer = ByteBuffer.wrap(Lz4.decompress(page.compressed, page.length));
+        page.referenced = false;
+        page.decompressed = buffer;
+        pages[hand] = page;
+        hand = (hand + 1) % pages.length;
+        return buffer;
+    }
+}
@@ -0,0 +1,42 @@
+package com.github.shautvast.contiguous;
+
+import java.nio.ByteBuffer;
+
+/*
+ * Tells the list to keep its data in pages, see Storage.paged and DataBuffer. The pages themselves come from
+ * the wrapped storage.
+ */
+class PagedStorage implements Storage {
+    private final Storage storage;
+    private final int pageShift;
+
+    PagedStorage(Storage storage, int pageSize) {
+        if (storage instanceof PagedStorage) {
+            throw new IllegalArgumentException("Storage is already paged");
+        }
+        if (Integer.bitCount(pageSize) != 1 || pageSize < 1 << 10 || pageSize > 1 << 30) {
+            throw new IllegalArgumentException("Page size must be a power of two from 1kB to 1GB, not " + pageSize);
+        }
+        this.storage = storage;
+        this.pageShift = Integer.numberOfTrailingZeros(pageSize);
+    }
+
+    int getPageShift() {
+        return pageShift;
+    }
+
+    @Override
+    public ByteBuffer allocate(int capacity) {
+        return storage.allocate(capacity);
+    }
+
+    @Override
+    public void release(ByteBuffer buffer) {
+        storage.release(buffer);
+    }
+
+    @Override
+    public boolean isOffHeap() {
+        return storage.isOffHeap();
+    }
+}
@@ -0,0 +1,53 @@
+package com.github.shautvast.contiguous;
+
+/**
+ * Refers to a (leaf) property of the element type of a {@link ContiguousList}, for use with the typed
+ * accessors like {@link ContiguousList#getInt(int, PropertyHandle)}.
+ * <p>
+ * Resolve it once with {@link ContiguousList#getPropertyHandle(String)} and reuse it, so that
+ * the property path does not have to be looked up for every value.
+ */
+public final class PropertyHandle {
+    private final TypeHandler root;
+    private final int leaf;
+    private final String path;
+    private final BuiltinTypeHandler<?> handler;
+
+    PropertyHandle(TypeHandler root, int leaf, String path, BuiltinTypeHandler<?> handler) {
+        this.root = root;
+        this.leaf = leaf;
+        this.path = path;
+        this.handler = handler;
+    }
+
+    /**
+     * @return the property path, eg. "address.city"
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @return the type of the property
+     */
+    public Class<?> getType() {
+        return handler.getType();
+    }
+
+    int getLeaf() {
+        return leaf;
+    }
+
+    TypeHandler getRoot() {
+        return root;
+    }
+
+    BuiltinTypeHandler<?> getHandler() {
+        return handler;
+    }
+
+    @Override
+    public String toString() {
+        return "PropertyHandle{" + path + "}";
+    }
+}
@@ -0,0 +1,174 @@
+package com.github.shautvast.contiguous;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/*
+ * A sorted index on a number property of a list (see ContiguousList.rangeScan): the values and the elements
+ * that have them, as two primitive arrays sorted on the value, so that a range is found with two binary searches.
+ *
+ * Floating point values are kept as longs that sort the same way (see ElementSorter.sortableBits), so there is
+ * one array type. Nulls are not in the index.
+ *
+ * Elements that were added since the index was last used are sorted on their own and merged in when it is used
+ * again, which is why all methods are synchronized.
+ */
+final class RangeIndex {
+    private static final int INSERTION_SORT_THRESHOLD = 32;
+
+    private final ContiguousList<?> list;
+    private final int leaf;
+    private final boolean floatingPoint;
+    private final ContiguousList<?>.Cursor cursor;
+
+    private long[] keys = new long[0];
+    private int[] indices = new int[0];
+    private int indexed; // the elements before this one are in the index
+
+    RangeIndex(ContiguousList<?> list, int leaf, boolean floatingPoint) {
+        this.list = list;
+        this.leaf = leaf;
+        this.floatingPoint = floatingPoint;
+        this.cursor = list.cursor();
+    }
+
+    boolean isFloatingPoint() {
+        return floatingPoint;
+    }
+
+    /*
+     * the elements with a key in [lo, hi], in the order of the keys
+     */
+    synchronized int[] scan(long lo, long hi) {
+        update();
+        if (lo > hi) {
+            return new int[0];
+        }
+        return Arrays.copyOfRange(indices, lowerBound(lo), upperBound(hi));
+    }
+
+    /*
+     * empties the index, it's built again when it's used. For when the elements change places
+     */
+    synchronized void reset() {
+        keys = new long[0];
+        indices = new int[0];
+        indexed = 0;
+    }
+
+    /*
+     * the position of the first key >= key
+     */
+    private int lowerBound(long key) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (keys[middle] < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /*
+     * the position of the first key > key
+     */
+    private int upperBound(long key) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (keys[middle] <= key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /*
+     * sorts the elements that were added since the last time and merges them in
+     */
+    private void update() {
+        int size = list.size();
+        if (indexed == size) {
+            return;
+        }
+        long[] addedKeys = new long[size - indexed];
+        int[] addedIndices = new int[size - indexed];
+        int added = 0;
+        for (int index = indexed; index < size; index++) {
+            ByteBuffer buffer = cursor.seek(index, leaf);
+            if (!ValueReader.isNull(buffer)) {
+                addedKeys[added] = floatingPoint
+                        ? ElementSorter.sortableBits(ValueReader.readDouble(buffer))
+                        : ValueReader.readLong(buffer);
+                addedIndices[added] = index;
+                added++;
+            }
+        }
+        sort(addedKeys, addedIndices, new long[added], new int[added], 0, added);
+
+        // the added elements come after the others, so on equal keys these go first
+        long[] mergedKeys = new long[keys.length + added];
+        int[] mergedIndices = new int[keys.length + added];
+        int left = 0;
+        int right = 0;
+        for (int i = 0; i < mergedKeys.length; i++) {
+            if (right >= added || left < keys.length && keys[left] <= addedKeys[right]) {
+                mergedKeys[i] = keys[left];
+                mergedIndices[i] = indices[left++];
+            } else {
+                mergedKeys[i] = addedKeys[right];
+                mergedIndices[i] = addedIndices[right++];
+            }
+        }
+        keys = mergedKeys;
+        indices = mergedIndices;
+        indexed = size;
+    }
+
+    /*
+     * stable merge sort of the keys, the indices move along
+     */
+    private static void sort(long[] keys, int[] indices, long[] scratchKeys, int[] scratchIndices, int from, int to) {
+        if (to - from <= INSERTION_SORT_THRESHOLD) {
+            for (int i = from + 1; i < to; i++) {
+                long key = keys[i];
+                int index = indices[i];
+                int j = i - 1;
+                while (j >= from && keys[j] > key) {
+                    keys[j + 1] = keys[j];
+                    indices[j + 1] = indices[j];
+                    j--;
+                }
+                keys[j + 1] = key;
+                indices[j + 1] = index;
+            }
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        sort(keys, indices, scratchKeys, scratchIndices, from, middle);
+        sort(keys, indices, scratchKeys, scratchIndices, middle, to);
+        if (keys[middle - 1] <= keys[middle]) {
+            return;
+        }
+        System.arraycopy(keys, from, scratchKeys, from, to - from);
+        System.arraycopy(indices, from, scratchIndices, from, to - from);
+        int left = from;
+        int right = middle;
+        for (int i = from; i < to; i++) {
+            if (right >= to || left < middle && scratchKeys[left] <= scratchKeys[right]) {
+                keys[i] = scratchKeys[left];
+                indices[i] = scratchIndices[left++];
+            } else {
+                keys[i] = scratchKeys[right];
+                indices[i] = scratchIndices[right++];
+            }
+        }
+    }
+}
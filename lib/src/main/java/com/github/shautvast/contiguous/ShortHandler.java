@@ -12,6 +12,11 @@ class ShortHandler extends BuiltinTypeHandler<Short> {
         list.storeShort(value);
     }
 
+    @Override
+    int getFixedWidth() {
+        return 3; // type + 2 bytes
+    }
+
     @Override
     public void setValue(Object instance, Object value) {
         super.setValue(instance, ((Long) value).shortValue());
@@ -0,0 +1,41 @@
+package com.github.shautvast.contiguous;
+
+/**
+ * A property to sort a {@link ContiguousList} on, see {@link ContiguousList#sortBy(SortKey...)}.
+ */
+public final class SortKey {
+    private final String propertyPath;
+    private final boolean descending;
+
+    private SortKey(String propertyPath, boolean descending) {
+        this.propertyPath = propertyPath;
+        this.descending = descending;
+    }
+
+    /**
+     * @param propertyPath the property, for instance "address.city"
+     */
+    public static SortKey ascending(String propertyPath) {
+        return new SortKey(propertyPath, false);
+    }
+
+    /**
+     * @param propertyPath the property, for instance "address.city"
+     */
+    public static SortKey descending(String propertyPath) {
+        return new SortKey(propertyPath, true);
+    }
+
+    public String getPropertyPath() {
+        return propertyPath;
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+
+    @Override
+    public String toString() {
+        return "SortKey{" + propertyPath + (descending ? " desc}" : "}");
+    }
+}
@@ -0,0 +1,77 @@
+package com.github.shautvast.contiguous;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Provides the buffers that hold the data of a {@link ContiguousList}.
+ * <p>
+ * The storage is chosen when the list is created:
+ * <ul>
+ *     <li>{@link #HEAP} (the default) regular heap ByteBuffers, that are reused through the {@link BufferPool}</li>
+ *     <li>{@link #OFF_HEAP} direct ByteBuffers, outside the java heap, so the garbage collector never has
+ *     to copy (or even look at) the data. The memory is freed as soon as {@link ContiguousList#close()} is called.
+ *     Meant for large lists that are kept around for a while, like caches.</li>
+ * </ul>
+ * Either can be wrapped with {@link #paged(Storage, int)}, so that the list grows without copying its data.
+ * Implement this interface to plug in a different kind of storage.
+ */
+public interface Storage {
+
+    Storage HEAP = new HeapStorage();
+
+    Storage OFF_HEAP = new OffHeapStorage();
+
+    /**
+     * Keeps the data in pages of pageSize bytes, that come from the given storage. When the list is full it adds
+     * a page, instead of copying all data to a larger buffer, which for a large list is slow and takes 2.5 times
+     * the memory while it lasts. An element is never split over two pages, so the end of a page may be left unused.
+     * <p>
+     * Not for the {@link Layout#FIXED_WIDTH} layout, which finds the elements by their position.
+     *
+     * @param storage  where the pages come from, for instance {@link #HEAP}
+     * @param pageSize a power of two, from 1kB to 1GB
+     * @return the paged storage, to pass to the constructor of the list
+     */
+    static Storage paged(Storage storage, int pageSize) {
+        return new PagedStorage(storage, pageSize);
+    }
+
+    /**
+     * @param capacity the minimal capacity
+     * @return a buffer with position 0. The content is undefined
+     */
+    ByteBuffer allocate(int capacity);
+
+    /**
+     * Called when the list is full. The default implementation allocates a new buffer, copies the data
+     * and releases the old buffer.
+     *
+     * @param buffer   the current buffer, that must not be used by the caller afterwards
+     * @param length   the nr of bytes in use, ie. that have to be retained
+     * @param capacity the minimal capacity of the new buffer
+     * @return a buffer with the same first length bytes as the old one
+     */
+    default ByteBuffer grow(ByteBuffer buffer, int length, int capacity) {
+        ByteBuffer newBuffer = allocate(capacity);
+        ByteBuffer used = buffer.duplicate();
+        used.position(0).limit(length);
+        newBuffer.put(used);
+        newBuffer.position(0);
+        release(buffer);
+        return newBuffer;
+    }
+
+    /**
+     * Hands back a buffer that is no longer used.
+     */
+    void release(ByteBuffer buffer);
+
+    /**
+     * Off-heap lists are usually long-lived and are closed by their owner, not by whoever happens to write them out.
+     *
+     * @return true if the buffers are outside the java heap. The default is false
+     */
+    default boolean isOffHeap() {
+        return false;
+    }
+}
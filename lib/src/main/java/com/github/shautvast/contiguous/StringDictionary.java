@@ -0,0 +1,57 @@
+package com.github.shautvast.contiguous;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * The distinct values of a dictionary encoded String property (see ContiguousList.enableDictionary).
+ * The list stores the code of a value, which is its index in here, as an integer number.
+ *
+ * Values are never removed, so a code stays valid. Every value is also kept as it appears in JSON
+ * (quoted and escaped UTF-8), so that writing JSON is a plain copy.
+ *
+ * encode may be called from several threads at once (addAllParallel). Looking up a known value does not lock.
+ */
+final class StringDictionary {
+    private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+    private final List<String> values = new ArrayList<>();
+    private final List<byte[]> jsonValues = new ArrayList<>();
+
+    int encode(String value) {
+        Integer code = codes.get(value);
+        return code != null ? code : add(value);
+    }
+
+    private synchronized int add(String value) {
+        Integer code = codes.get(value);
+        if (code == null) {
+            code = values.size();
+            values.add(value);
+            jsonValues.add(JsonWriter.quote(value));
+            codes.put(value, code);
+        }
+        return code;
+    }
+
+    String get(int code) {
+        return values.get(code);
+    }
+
+    byte[] getJson(int code) {
+        return jsonValues.get(code);
+    }
+
+    /*
+     * the code of value, -1 if it is not in the dictionary
+     */
+    int getCode(String value) {
+        Integer code = codes.get(value);
+        return code == null ? -1 : code;
+    }
+
+    int size() {
+        return values.size();
+    }
+}
@@ -0,0 +1,98 @@
+package com.github.shautvast.contiguous;
+
+import java.nio.ByteBuffer;
+
+/*
+ * UTF-8 encoding without the intermediate byte[] that String.getBytes creates.
+ * Produces the exact same bytes as String.getBytes(StandardCharsets.UTF_8), including the '?' for unpaired surrogates
+ */
+final class Utf8 {
+
+    private Utf8() {
+    }
+
+    /*
+     * nr of bytes the value takes when encoded
+     */
+    static int encodedLength(String value) {
+        int length = value.length();
+        int utf8Length = length;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x80) {
+                if (c < 0x800) {
+                    utf8Length += 1;
+                } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    // 2 chars => 4 bytes
+                    utf8Length += 2;
+                    i++;
+                } else if (!Character.isSurrogate(c)) {
+                    utf8Length += 2;
+                } // unpaired surrogate => '?'
+            }
+        }
+        return utf8Length;
+    }
+
+    /*
+     * writes the value into the buffer at the (absolute) position. Caller makes sure there is enough room.
+     *
+     * returns the nr of bytes written
+     */
+    static int encode(String value, ByteBuffer buffer, int position) {
+        int p = position;
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                buffer.put(p++, (byte) c);
+            } else if (c < 0x800) {
+                buffer.put(p++, (byte) (0xc0 | (c >> 6)));
+                buffer.put(p++, (byte) (0x80 | (c & 0x3f)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer.put(p++, (byte) (0xf0 | (codePoint >> 18)));
+                buffer.put(p++, (byte) (0x80 | ((codePoint >> 12) & 0x3f)));
+                buffer.put(p++, (byte) (0x80 | ((codePoint >> 6) & 0x3f)));
+                buffer.put(p++, (byte) (0x80 | (codePoint & 0x3f)));
+            } else if (Character.isSurrogate(c)) {
+                buffer.put(p++, (byte) '?');
+            } else {
+                buffer.put(p++, (byte) (0xe0 | (c >> 12)));
+                buffer.put(p++, (byte) (0x80 | ((c >> 6) & 0x3f)));
+                buffer.put(p++, (byte) (0x80 | (c & 0x3f)));
+            }
+        }
+        return p - position;
+    }
+
+    /*
+     * Compares in the order of the encoded bytes, which is code point order. String.compareTo compares UTF-16 chars,
+     * which puts the supplementary characters before U+E000..U+FFFF.
+     */
+    static int compare(String a, String b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            int x = codePointAt(a, i);
+            int y = codePointAt(b, j);
+            if (x != y) {
+                return Integer.compare(x, y);
+            }
+            i += x > 0xFFFF ? 2 : 1;
+            j += y > 0xFFFF ? 2 : 1;
+        }
+        return Boolean.compare(i < a.length(), j < b.length());
+    }
+
+    /*
+     * like String.codePointAt, but an unpaired surrogate is '?', as it's encoded
+     */
+    private static int codePointAt(String value, int index) {
+        char c = value.charAt(index);
+        if (Character.isHighSurrogate(c) && index + 1 < value.length() && Character.isLowSurrogate(value.charAt(index + 1))) {
+            return Character.toCodePoint(c, value.charAt(index + 1));
+        }
+        return Character.isSurrogate(c) ? '?' : c;
+    }
+}
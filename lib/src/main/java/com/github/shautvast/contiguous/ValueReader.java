@@ -14,14 +14,89 @@ public class ValueReader {
      * Reads a value from the buffer.
      *
      * @param buffer Bytebuffer containing the storage.
-     *
-     * //TODO can we make a typesafe read method? I think so
      */
     public static Object read(ByteBuffer buffer) {
         long type = Varint.read(buffer);
         return read(buffer, type);
     }
 
+    /**
+     * Reads an integer number (stored byte, short, int or long) from the buffer, without boxing.
+     *
+     * @param buffer Bytebuffer containing the storage.
+     * @throws NullPointerException  if the stored value is null
+     * @throws IllegalStateException if the stored value is not an integer number
+     */
+    public static long readLong(ByteBuffer buffer) {
+        long type = Varint.read(buffer);
+        if (type == 8) {
+            return 0L;
+        } else if (type == 9) {
+            return 1L;
+        } else if (type > 0 && type <= 6L) {
+            return readInteger(buffer, getvalueLengthForType(type));
+        } else if (type == 0) {
+            throw new NullPointerException("value is null");
+        } else throw new IllegalStateException("not an integer number, column type " + type);
+    }
+
+    /**
+     * Reads a number from the buffer as double, without boxing. Integer numbers and floats are converted.
+     *
+     * @param buffer Bytebuffer containing the storage.
+     * @throws NullPointerException  if the stored value is null
+     * @throws IllegalStateException if the stored value is not a number
+     */
+    public static double readDouble(ByteBuffer buffer) {
+        long type = Varint.read(buffer);
+        if (type == 7) {
+            return buffer.getDouble();
+        } else if (type == 10) {
+            return buffer.getFloat();
+        } else if (type == 8) {
+            return 0;
+        } else if (type == 9) {
+            return 1;
+        } else if (type > 0 && type <= 6L) {
+            return readInteger(buffer, getvalueLengthForType(type));
+        } else if (type == 0) {
+            throw new NullPointerException("value is null");
+        } else throw new IllegalStateException("not a number, column type " + type);
+    }
+
+    /**
+     * Reads a String from the buffer. Null values are returned as null.
+     *
+     * @param buffer Bytebuffer containing the storage.
+     * @throws IllegalStateException if the stored value is not a String
+     */
+    public static String readString(ByteBuffer buffer) {
+        long type = Varint.read(buffer);
+        if (type == 0) {
+            return null;
+        } else if (type >= 13 && type % 2 == 1) {
+            return readString(buffer, getvalueLengthForType(type));
+        } else throw new IllegalStateException("not a string, column type " + type);
+    }
+
+    /**
+     * @param buffer Bytebuffer containing the storage.
+     * @return true if the next value in the buffer is null. The buffer position is not changed.
+     */
+    public static boolean isNull(ByteBuffer buffer) {
+        return buffer.get(buffer.position()) == 0;
+    }
+
+    /**
+     * Moves the buffer position past the next value, without decoding it.
+     *
+     * @param buffer Bytebuffer containing the storage.
+     */
+    public static void skip(ByteBuffer buffer) {
+        long type = Varint.read(buffer);
+        buffer.position(buffer.position() + getvalueLengthForType(type));
+    }
+
     /**
      * Reads a value from the buffer
      *
@@ -33,10 +108,8 @@ public class ValueReader {
     private static Object read(ByteBuffer buffer, long columnType) {
         if (columnType == 0) {
             return null;
-        } else if (columnType < 6L) {
-            byte[] integerBytes = new byte[getvalueLengthForType(columnType)];
-            buffer.get(integerBytes);
-            return bytesToLong(integerBytes);
+        } else if (columnType <= 6L) {
+            return readInteger(buffer, getvalueLengthForType(columnType));
         } else if (columnType == 7) {
             return buffer.getDouble();
         } else if (columnType == 8) {
@@ -50,12 +123,35 @@ public class ValueReader {
             buffer.get(bytes);
             return bytes;
         } else if (columnType >= 13) {
-            byte[] bytes = new byte[getvalueLengthForType(columnType)];
-            buffer.get(bytes);
-            return new String(bytes, StandardCharsets.UTF_8);
+            return readString(buffer, getvalueLengthForType(columnType));
         } else throw new IllegalStateException("unknown column type" + columnType);
     }
 
+    /*
+     * big-endian two's complement in length bytes, same as bytesToLong, but without the byte[]
+     */
+    private static long readInteger(ByteBuffer buffer, int length) {
+        long n = buffer.get(); // sign extends
+        for (int i = 1; i < length; i++) {
+            n = (n << 8) | (buffer.get() & 0xFF);
+        }
+        return n;
+    }
+
+    private static String readString(ByteBuffer buffer, int length) {
+        String value;
+        if (buffer.hasArray()) {
+            // decode straight from the backing array
+            value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return value;
+    }
+
     private static int getvalueLengthForType(long columnType) {
         // can't switch on long
         if (columnType == 0 || columnType == 8 || columnType == 9) {
@@ -66,6 +162,8 @@ public class ValueReader {
             return 6;
         } else if (columnType == 6 || columnType == 7) {
             return 8;
+        } else if (columnType == 10) {
+            return 4; // float
         } else if (columnType < 12) {
             return -1;
         } else {
@@ -36,6 +36,49 @@ public final class Varint {
         }
     }
 
+    /**
+     * Writes the value directly into the buffer at the given (absolute) position, so without the intermediate
+     * byte arrays that {@link #write(long)} needs. The buffer position is not changed.
+     * <p>
+     * The caller is responsible for making sure there is room for {@link #getLength(long)} bytes.
+     *
+     * @return the number of bytes written
+     */
+    public static int write(long v, ByteBuffer buffer, int position) {
+        int length = getLength(v);
+        if (length == 9) {
+            buffer.put(position + 8, (byte) v);
+            v >>= 8;
+            for (int i = 7; i >= 0; i--) {
+                buffer.put(position + i, (byte) ((v & 0x7f) | 0x80));
+                v >>= 7;
+            }
+        } else {
+            // last byte is the lowest 7 bits, without the continuation bit
+            buffer.put(position + length - 1, (byte) (v & 0x7f));
+            v >>= 7;
+            for (int i = length - 2; i >= 0; i--) {
+                buffer.put(position + i, (byte) ((v & 0x7f) | 0x80));
+                v >>= 7;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * @return the nr of bytes needed to store the value as varint
+     */
+    public static int getLength(long v) {
+        if ((v & ((0xff000000L) << 32)) != 0) {
+            return 9;
+        }
+        int n = 1;
+        while ((v >>>= 7) != 0) {
+            n++;
+        }
+        return n;
+    }
+
     /*
      * read a long value from a variable nr of bytes in varint format
      *
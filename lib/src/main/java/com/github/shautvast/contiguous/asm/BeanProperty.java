@@ -0,0 +1,89 @@
+package com.github.shautvast.contiguous.asm;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * A bean property, or the element type itself (name == null), with the (public) getter and setter to call
+ * from generated code. Compound properties have children, leaves have the index of their stored value.
+ */
+final class BeanProperty {
+    final String name;
+    final Class<?> type;
+    final Method getter;
+    final Method setter;
+    final List<BeanProperty> children = new ArrayList<>();
+    int leaf = -1;
+
+    private BeanProperty(String name, Class<?> type, Method getter, Method setter) {
+        this.name = name;
+        this.type = type;
+        this.getter = getter;
+        this.setter = setter;
+    }
+
+    boolean isLeaf() {
+        return leaf >= 0;
+    }
+
+    /*
+     * rebuilds the (compound) property tree from the leaf paths, which are depth-first
+     */
+    static BeanProperty of(Class<?> type, List<String> leafPaths) throws NoSuchMethodException {
+        BeanProperty root = new BeanProperty(null, type, null, null);
+        for (int leaf = 0; leaf < leafPaths.size(); leaf++) {
+            BeanProperty parent = root;
+            String[] names = leafPaths.get(leaf).split("\\.");
+            for (String name : names) {
+                BeanProperty child = parent.children.isEmpty() ? null : parent.children.get(parent.children.size() - 1);
+                if (child == null || !child.name.equals(name)) {
+                    String capitalized = name.substring(0, 1).toUpperCase() + name.substring(1);
+                    Method getter = parent.type.getMethod("get" + capitalized);
+                    Method setter = parent.type.getMethod("set" + capitalized, getter.getReturnType());
+                    child = new BeanProperty(name, getter.getReturnType(), getter, setter);
+                    parent.children.add(child);
+                }
+                parent = child;
+            }
+            parent.leaf = leaf;
+        }
+        return root;
+    }
+
+    /*
+     * can generated code in the package (and classloader) of lookupClass use this property?
+     */
+    boolean isAccessibleFrom(Class<?> lookupClass) {
+        if (type.isPrimitive()) {
+            return true;
+        }
+        try {
+            // same class (not just the same name) in the classloader that will load the generated class
+            if (Class.forName(type.getName(), false, lookupClass.getClassLoader()) != type) {
+                return false;
+            }
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+        if (!isLeaf()) {
+            if (!Modifier.isPublic(type.getModifiers())) {
+                return false;
+            }
+            try {
+                if (!Modifier.isPublic(type.getConstructor().getModifiers())) {
+                    return false;
+                }
+            } catch (NoSuchMethodException e) {
+                return false;
+            }
+            for (BeanProperty child : children) {
+                if (!child.isAccessibleFrom(lookupClass)) {
+                    return false;
+                }
+            }
+        }
+        return type.getClassLoader() == null || Modifier.isPublic(type.getModifiers());
+    }
+}
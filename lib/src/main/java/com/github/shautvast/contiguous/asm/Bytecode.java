@@ -0,0 +1,101 @@
+package com.github.shautvast.contiguous.asm;
+
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+import java.lang.reflect.Method;
+
+import static org.objectweb.asm.Opcodes.*;
+
+/*
+ * bits of bytecode that the generators have in common
+ */
+final class Bytecode {
+
+    static final String LIST = "com/github/shautvast/contiguous/ContiguousList";
+    static final String CURSOR = "com/github/shautvast/contiguous/ContiguousList$Cursor";
+    static final String VALUE_READER = "com/github/shautvast/contiguous/ValueReader";
+    static final String BYTEBUFFER_DESCRIPTOR = "Ljava/nio/ByteBuffer;";
+    static final String SEEK_DESCRIPTOR = "(II)" + BYTEBUFFER_DESCRIPTOR;
+
+    private Bytecode() {
+    }
+
+    /*
+     * types that are read and written without boxing and without their type handler
+     */
+    static boolean isSpecialized(Class<?> type) {
+        return type == String.class || type == long.class || type == int.class || type == short.class
+                || type == byte.class || type == double.class || type == float.class;
+    }
+
+    /*
+     * expects a ByteBuffer positioned at the value on the stack, replaces it with the value of the given
+     * (specialized) number type. Strings are read with readLeaf, because they can be dictionary encoded.
+     */
+    static void readValue(MethodVisitor mv, Class<?> type) {
+        if (type == double.class || type == float.class) {
+            mv.visitMethodInsn(INVOKESTATIC, VALUE_READER, "readDouble", "(" + BYTEBUFFER_DESCRIPTOR + ")D", false);
+            if (type == float.class) {
+                mv.visitInsn(D2F);
+            }
+        } else {
+            mv.visitMethodInsn(INVOKESTATIC, VALUE_READER, "readLong", "(" + BYTEBUFFER_DESCRIPTOR + ")J", false);
+            if (type != long.class) {
+                mv.visitInsn(L2I);
+                if (type == short.class) {
+                    mv.visitInsn(I2S);
+                } else if (type == byte.class) {
+                    mv.visitInsn(I2B);
+                }
+            }
+        }
+    }
+
+    /*
+     * expects the list and a ByteBuffer positioned at the value on the stack, replaces them with the value,
+     * read and cast by the type handler of the leaf
+     */
+    static void readLeaf(MethodVisitor mv, int leaf, Class<?> type) {
+        pushInt(mv, leaf);
+        if (type == String.class) {
+            mv.visitMethodInsn(INVOKEVIRTUAL, LIST, "readString", "(" + BYTEBUFFER_DESCRIPTOR + "I)Ljava/lang/String;", false);
+        } else {
+            mv.visitMethodInsn(INVOKEVIRTUAL, LIST, "readLeaf", "(" + BYTEBUFFER_DESCRIPTOR + "I)Ljava/lang/Object;", false);
+            mv.visitTypeInsn(CHECKCAST, Type.getInternalName(type));
+        }
+    }
+
+    static void newInstance(MethodVisitor mv, Class<?> type) {
+        String internalName = Type.getInternalName(type);
+        mv.visitTypeInsn(NEW, internalName);
+        mv.visitInsn(DUP);
+        mv.visitMethodInsn(INVOKESPECIAL, internalName, "<init>", "()V", false);
+    }
+
+    static void invoke(MethodVisitor mv, Method method) {
+        Class<?> owner = method.getDeclaringClass();
+        boolean isInterface = owner.isInterface();
+        mv.visitMethodInsn(isInterface ? INVOKEINTERFACE : INVOKEVIRTUAL, Type.getInternalName(owner),
+                method.getName(), Type.getMethodDescriptor(method), isInterface);
+    }
+
+    /*
+     * pops the result of a fluent setter
+     */
+    static void popResult(MethodVisitor mv, Method method) {
+        if (method.getReturnType() != void.class) {
+            mv.visitInsn(Type.getType(method.getReturnType()).getSize() == 2 ? POP2 : POP);
+        }
+    }
+
+    static void pushInt(MethodVisitor mv, int value) {
+        if (value <= 5) {
+            mv.visitInsn(ICONST_0 + value);
+        } else if (value <= Byte.MAX_VALUE) {
+            mv.visitIntInsn(BIPUSH, value);
+        } else {
+            mv.visitLdcInsn(value);
+        }
+    }
+}
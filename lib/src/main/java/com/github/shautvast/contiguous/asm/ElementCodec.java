@@ -0,0 +1,22 @@
+package com.github.shautvast.contiguous.asm;
+
+import com.github.shautvast.contiguous.ContiguousList;
+
+/**
+ * Writes an element into a {@link ContiguousList} and reads it back, calling the getters and setters directly.
+ * Implementations are generated per element class by {@link ElementCodecGenerator}.
+ *
+ * @param <E> the element type
+ */
+public interface ElementCodec<E> {
+
+    /**
+     * Stores all property values of the element, in the order of the stored data
+     */
+    void write(E element, ContiguousList<?> list);
+
+    /**
+     * Creates a new element from the stored data
+     */
+    E read(ContiguousList<?> list, int index);
+}
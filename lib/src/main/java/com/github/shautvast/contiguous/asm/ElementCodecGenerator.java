@@ -0,0 +1,210 @@
+package com.github.shautvast.contiguous.asm;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+import java.lang.invoke.MethodHandles;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.github.shautvast.contiguous.asm.Bytecode.*;
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * Generates an {@link ElementCodec} class for an element type, that does what ContiguousList otherwise does using
+ * reflection: call the getters and setters in the order of the stored data and write the values straight to the list.
+ * <p>
+ * For a Customer with a name and an address with a city it generates something like:
+ * <pre>
+ * public void write(Object element, ContiguousList list) {
+ *     Customer customer = (Customer) element;
+ *     list.storeString(customer.getName());
+ *     Address address = customer.getAddress();
+ *     list.storeString(address.getCity());
+ * }
+ *
+ * public Object read(ContiguousList list, int index) {
+ *     ContiguousList.Cursor cursor = list.cursor();
+ *     Customer customer = new Customer();
+ *     customer.setName(list.readString(cursor.seekNext(index, 0), 0));
+ *     Address address = new Address();
+ *     customer.setAddress(address);
+ *     address.setCity(list.readString(cursor.seekNext(index, 1), 1));
+ *     return customer;
+ * }
+ * </pre>
+ * Strings and primitives are handled directly, without boxing. Strings are read through the list, which knows
+ * whether they are dictionary encoded. Other types (boxed numbers, BigDecimal, BigInteger)
+ * are stored and read by their type handler (storeLeaf/readLeaf on the list).
+ * <p>
+ * The generated class is defined in the package of the lookup (the ContiguousList package), because it calls
+ * methods that are package private.
+ */
+public final class ElementCodecGenerator {
+
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+
+    private ElementCodecGenerator() {
+    }
+
+    /**
+     * @param lookup    lookup with package access in the package of ContiguousList
+     * @param type      the element type
+     * @param leafPaths the paths of the stored properties in the order of the stored data, eg. "address.city"
+     * @return the codec, or empty if the element type is not suitable, for instance because it is not public
+     * or not visible to the classloader of the lookup
+     */
+    public static <E> Optional<ElementCodec<E>> generate(MethodHandles.Lookup lookup, Class<E> type,
+                                                         List<String> leafPaths) {
+        try {
+            BeanProperty root = BeanProperty.of(type, leafPaths);
+            if (!root.isAccessibleFrom(lookup.lookupClass())) {
+                return Optional.empty();
+            }
+            String packageName = lookup.lookupClass().getPackage().getName().replace('.', '/');
+            String className = packageName + "/" + type.getSimpleName() + "Codec" + COUNTER.incrementAndGet();
+
+            Class<?> codecClass = lookup.defineClass(generateClass(className, root));
+            @SuppressWarnings("unchecked")
+            ElementCodec<E> codec = (ElementCodec<E>) codecClass.getDeclaredConstructor().newInstance();
+            return Optional.of(codec);
+        } catch (NoSuchMethodException e) {
+            // not a bean after all
+            return Optional.empty();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] generateClass(String className, BeanProperty root) {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS); // no branches, so no frames
+        cw.visit(V9, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, className, null, "java/lang/Object",
+                new String[]{Type.getInternalName(ElementCodec.class)});
+
+        MethodVisitor constructor = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+        constructor.visitCode();
+        constructor.visitVarInsn(ALOAD, 0);
+        constructor.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        constructor.visitInsn(RETURN);
+        constructor.visitMaxs(0, 0);
+        constructor.visitEnd();
+
+        generateWrite(cw, root);
+        generateRead(cw, root);
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    /*
+     * locals: 0 this, 1 element, 2 list, 3.. nested objects
+     */
+    private static void generateWrite(ClassWriter cw, BeanProperty root) {
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "write", "(Ljava/lang/Object;L" + LIST + ";)V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitTypeInsn(CHECKCAST, Type.getInternalName(root.type));
+        mv.visitVarInsn(ASTORE, 1);
+        writeChildren(mv, root, 1, new int[]{3});
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private static void writeChildren(MethodVisitor mv, BeanProperty parent, int parentLocal, int[] nextLocal) {
+        for (BeanProperty child : parent.children) {
+            if (child.isLeaf()) {
+                mv.visitVarInsn(ALOAD, 2);
+                if (!isSpecialized(child.type)) {
+                    // list.storeLeaf(leaf, (Object) parent.getX())
+                    pushInt(mv, child.leaf);
+                    invokeGetter(mv, parentLocal, child);
+                    mv.visitMethodInsn(INVOKEVIRTUAL, LIST, "storeLeaf", "(ILjava/lang/Object;)V", false);
+                } else {
+                    invokeGetter(mv, parentLocal, child);
+                    Class<?> type = child.type;
+                    if (type == String.class) {
+                        mv.visitMethodInsn(INVOKEVIRTUAL, LIST, "storeString", "(Ljava/lang/String;)V", false);
+                    } else if (type == double.class) {
+                        mv.visitMethodInsn(INVOKEVIRTUAL, LIST, "storeDoubleValue", "(D)V", false);
+                    } else if (type == float.class) {
+                        mv.visitMethodInsn(INVOKEVIRTUAL, LIST, "storeFloatValue", "(F)V", false);
+                    } else {
+                        if (type != long.class) {
+                            mv.visitInsn(I2L);
+                        }
+                        mv.visitMethodInsn(INVOKEVIRTUAL, LIST, "storeLongValue", "(J)V", false);
+                    }
+                }
+            } else {
+                int local = nextLocal[0]++;
+                invokeGetter(mv, parentLocal, child);
+                mv.visitVarInsn(ASTORE, local);
+                writeChildren(mv, child, local, nextLocal);
+            }
+        }
+    }
+
+    /*
+     * locals: 0 this, 1 list, 2 index, 3 cursor, 4 element, 5.. nested objects
+     */
+    private static void generateRead(ClassWriter cw, BeanProperty root) {
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "read", "(L" + LIST + ";I)Ljava/lang/Object;", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitMethodInsn(INVOKEVIRTUAL, LIST, "cursor", "()L" + CURSOR + ";", false);
+        mv.visitVarInsn(ASTORE, 3);
+        newInstance(mv, root.type);
+        mv.visitVarInsn(ASTORE, 4);
+        readChildren(mv, root, 4, new int[]{5});
+        mv.visitVarInsn(ALOAD, 4);
+        mv.visitInsn(ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private static void readChildren(MethodVisitor mv, BeanProperty parent, int parentLocal, int[] nextLocal) {
+        for (BeanProperty child : parent.children) {
+            mv.visitVarInsn(ALOAD, parentLocal);
+            if (child.isLeaf()) {
+                Class<?> type = child.type;
+                if (!isSpecialized(type) || type == String.class) {
+                    // parent.setX((X) list.readLeaf(cursor.seekNext(index, leaf), leaf))
+                    mv.visitVarInsn(ALOAD, 1);
+                    seekNext(mv, child.leaf);
+                    readLeaf(mv, child.leaf, type);
+                } else {
+                    seekNext(mv, child.leaf);
+                    readValue(mv, type);
+                }
+                invokeSetter(mv, child);
+            } else {
+                int local = nextLocal[0]++;
+                newInstance(mv, child.type);
+                mv.visitInsn(DUP);
+                mv.visitVarInsn(ASTORE, local);
+                invokeSetter(mv, child);
+                readChildren(mv, child, local, nextLocal);
+            }
+        }
+    }
+
+    private static void seekNext(MethodVisitor mv, int leaf) {
+        mv.visitVarInsn(ALOAD, 3);
+        mv.visitVarInsn(ILOAD, 2);
+        pushInt(mv, leaf);
+        mv.visitMethodInsn(INVOKEVIRTUAL, CURSOR, "seekNext", SEEK_DESCRIPTOR, false);
+    }
+
+    private static void invokeGetter(MethodVisitor mv, int parentLocal, BeanProperty child) {
+        mv.visitVarInsn(ALOAD, parentLocal);
+        invoke(mv, child.getter);
+    }
+
+    private static void invokeSetter(MethodVisitor mv, BeanProperty child) {
+        invoke(mv, child.setter);
+        popResult(mv, child.setter);
+    }
+}
@@ -0,0 +1,314 @@
+package com.github.shautvast.contiguous.asm;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.github.shautvast.contiguous.asm.Bytecode.*;
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * Generates a subclass of an element type whose getters read the value from the list the first time they are called.
+ * <p>
+ * For a Customer with a name it generates something like:
+ * <pre>
+ * public class Customer$Contiguous extends Customer {
+ *     private final ContiguousList list;
+ *     private final int index;
+ *     private boolean loaded$name;
+ *
+ *     public Customer$Contiguous(ContiguousList list, int index) {
+ *         this.list = list;
+ *         this.index = index;
+ *     }
+ *
+ *     public String getName() {
+ *         if (!loaded$name) {
+ *             super.setName(list.readString(list.seek(index, 0), 0));
+ *             loaded$name = true;
+ *         }
+ *         return super.getName();
+ *     }
+ *
+ *     public void setName(String name) {
+ *         loaded$name = true;
+ *         super.setName(name);
+ *     }
+ *
+ *     public boolean equals(Object other) {
+ *         $loadAll();
+ *         return super.equals(other);
+ *     }
+ *     // same for the other public methods, like hashCode and toString
+ * }
+ * </pre>
+ * A compound property (eg. an Address) gets its own generated subclass, created when its getter is first called.
+ * <p>
+ * The generated class is defined in the package of the lookup (the ContiguousList package), because it calls
+ * methods that are package private. So only public methods of the element type can be overridden.
+ */
+public final class LazyElementGenerator {
+
+    private static final String SUFFIX = "$Contiguous";
+    private static final String LIST_FIELD = "list";
+    private static final String INDEX_FIELD = "index";
+    private static final String CONSTRUCTOR_DESCRIPTOR = "(L" + LIST + ";I)V";
+    private static final Set<String> CLASS_NAMES = ConcurrentHashMap.newKeySet();
+
+    private LazyElementGenerator() {
+    }
+
+    /**
+     * @param lookup    lookup with package access in the package of ContiguousList
+     * @param type      the element type
+     * @param leafPaths the paths of the stored properties in the order of the stored data, eg. "address.city"
+     * @return the generated subclass, with a constructor (ContiguousList list, int index), or empty if the element
+     * type can not be subclassed, for instance because it or one of its getters is final
+     */
+    @SuppressWarnings("unchecked")
+    public static <E> Optional<Class<? extends E>> generate(MethodHandles.Lookup lookup, Class<E> type,
+                                                            List<String> leafPaths) {
+        try {
+            BeanProperty root = BeanProperty.of(type, leafPaths);
+            if (!root.isAccessibleFrom(lookup.lookupClass()) || !isExtensible(root)) {
+                return Optional.empty();
+            }
+            String packageName = lookup.lookupClass().getPackage().getName().replace('.', '/');
+            return Optional.of((Class<? extends E>) define(lookup, packageName + "/" + type.getSimpleName() + SUFFIX, root));
+        } catch (NoSuchMethodException e) {
+            // not a bean after all
+            return Optional.empty();
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static boolean isExtensible(BeanProperty property) {
+        if (Modifier.isFinal(property.type.getModifiers())) {
+            return false;
+        }
+        for (BeanProperty child : property.children) {
+            if (Modifier.isFinal(child.getter.getModifiers()) || Modifier.isFinal(child.setter.getModifiers())) {
+                return false;
+            }
+            if (!child.isLeaf() && !isExtensible(child)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * defines the classes for the compound properties first, because this one refers to them
+     */
+    private static Class<?> define(MethodHandles.Lookup lookup, String name, BeanProperty property) throws IllegalAccessException {
+        String className = name;
+        for (int i = 2; !CLASS_NAMES.add(className); i++) {
+            className = name + i; // same simple name in another package, or the type handlers were recreated
+        }
+        String[] childClassNames = new String[property.children.size()];
+        for (int i = 0; i < childClassNames.length; i++) {
+            BeanProperty child = property.children.get(i);
+            if (!child.isLeaf()) {
+                childClassNames[i] = Type.getInternalName(define(lookup, className + "$" + child.name, child));
+            }
+        }
+        return lookup.defineClass(generateClass(className, property, childClassNames));
+    }
+
+    private static byte[] generateClass(String className, BeanProperty property, String[] childClassNames) {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES) {
+            @Override
+            protected String getCommonSuperClass(String type1, String type2) {
+                return "java/lang/Object"; // frames never merge different types here, so no need to load classes
+            }
+        };
+        String superName = Type.getInternalName(property.type);
+        cw.visit(V9, ACC_PUBLIC | ACC_SUPER, className, null, superName, null);
+        cw.visitField(ACC_PRIVATE | ACC_FINAL, LIST_FIELD, "L" + LIST + ";", null, null).visitEnd();
+        cw.visitField(ACC_PRIVATE | ACC_FINAL, INDEX_FIELD, "I", null, null).visitEnd();
+        for (BeanProperty child : property.children) {
+            cw.visitField(ACC_PRIVATE, loadedField(child), "Z", null, null).visitEnd();
+        }
+
+        MethodVisitor constructor = cw.visitMethod(ACC_PUBLIC, "<init>", CONSTRUCTOR_DESCRIPTOR, null, null);
+        constructor.visitCode();
+        constructor.visitVarInsn(ALOAD, 0);
+        constructor.visitMethodInsn(INVOKESPECIAL, superName, "<init>", "()V", false);
+        constructor.visitVarInsn(ALOAD, 0);
+        constructor.visitVarInsn(ALOAD, 1);
+        constructor.visitFieldInsn(PUTFIELD, className, LIST_FIELD, "L" + LIST + ";");
+        constructor.visitVarInsn(ALOAD, 0);
+        constructor.visitVarInsn(ILOAD, 2);
+        constructor.visitFieldInsn(PUTFIELD, className, INDEX_FIELD, "I");
+        constructor.visitInsn(RETURN);
+        constructor.visitMaxs(0, 0);
+        constructor.visitEnd();
+
+        Set<String> accessors = new HashSet<>();
+        for (int i = 0; i < childClassNames.length; i++) {
+            BeanProperty child = property.children.get(i);
+            generateGetter(cw, className, superName, child, childClassNames[i]);
+            generateSetter(cw, className, superName, child);
+            accessors.add(child.getter.getName() + Type.getMethodDescriptor(child.getter));
+            accessors.add(child.setter.getName() + Type.getMethodDescriptor(child.setter));
+        }
+        generateLoadAll(cw, className, property);
+        for (Method method : property.type.getMethods()) {
+            String signature = method.getName() + Type.getMethodDescriptor(method);
+            if (isOverridable(method) && accessors.add(signature)) {
+                generateLoadingOverride(cw, className, superName, method);
+            }
+        }
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    /*
+     * public methods other than the accessors, that may read the fields directly. Not the ones of Object
+     * (nothing to do with the properties) and not the default methods of interfaces (those call the getters)
+     */
+    private static boolean isOverridable(Method method) {
+        int modifiers = method.getModifiers();
+        return !Modifier.isStatic(modifiers) && !Modifier.isFinal(modifiers) && !method.isSynthetic()
+                && method.getDeclaringClass() != Object.class && !method.getDeclaringClass().isInterface();
+    }
+
+    private static void generateGetter(ClassWriter cw, String className, String superName, BeanProperty child, String childClassName) {
+        Method getter = child.getter;
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, getter.getName(), Type.getMethodDescriptor(getter), null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitFieldInsn(GETFIELD, className, loadedField(child), "Z");
+        Label loaded = new Label();
+        mv.visitJumpInsn(IFNE, loaded);
+
+        // super.setX(value)
+        mv.visitVarInsn(ALOAD, 0);
+        if (child.isLeaf()) {
+            if (isSpecialized(child.type) && child.type != String.class) {
+                seek(mv, className, child.leaf);
+                readValue(mv, child.type);
+            } else {
+                // (X) list.readLeaf(list.seek(index, leaf), leaf)
+                mv.visitVarInsn(ALOAD, 0);
+                mv.visitFieldInsn(GETFIELD, className, LIST_FIELD, "L" + LIST + ";");
+                seek(mv, className, child.leaf);
+                readLeaf(mv, child.leaf, child.type);
+            }
+        } else {
+            mv.visitTypeInsn(NEW, childClassName);
+            mv.visitInsn(DUP);
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitFieldInsn(GETFIELD, className, LIST_FIELD, "L" + LIST + ";");
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitFieldInsn(GETFIELD, className, INDEX_FIELD, "I");
+            mv.visitMethodInsn(INVOKESPECIAL, childClassName, "<init>", CONSTRUCTOR_DESCRIPTOR, false);
+        }
+        invokeSuper(mv, superName, child.setter);
+        popResult(mv, child.setter);
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitInsn(ICONST_1);
+        mv.visitFieldInsn(PUTFIELD, className, loadedField(child), "Z");
+
+        mv.visitLabel(loaded);
+        mv.visitVarInsn(ALOAD, 0);
+        invokeSuper(mv, superName, getter);
+        mv.visitInsn(Type.getType(getter.getReturnType()).getOpcode(IRETURN));
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private static void seek(MethodVisitor mv, String className, int leaf) {
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitFieldInsn(GETFIELD, className, LIST_FIELD, "L" + LIST + ";");
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitFieldInsn(GETFIELD, className, INDEX_FIELD, "I");
+        pushInt(mv, leaf);
+        mv.visitMethodInsn(INVOKEVIRTUAL, LIST, "seek", SEEK_DESCRIPTOR, false);
+    }
+
+    /*
+     * a value that is set should not be overwritten by the stored one
+     */
+    private static void generateSetter(ClassWriter cw, String className, String superName, BeanProperty child) {
+        Method setter = child.setter;
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, setter.getName(), Type.getMethodDescriptor(setter), null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitInsn(ICONST_1);
+        mv.visitFieldInsn(PUTFIELD, className, loadedField(child), "Z");
+        callSuper(mv, superName, setter);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /*
+     * calls all getters, so that all fields have their value
+     */
+    private static void generateLoadAll(ClassWriter cw, String className, BeanProperty property) {
+        MethodVisitor mv = cw.visitMethod(ACC_PRIVATE, "$loadAll", "()V", null, null);
+        mv.visitCode();
+        for (BeanProperty child : property.children) {
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitMethodInsn(INVOKEVIRTUAL, className, child.getter.getName(), Type.getMethodDescriptor(child.getter), false);
+            popResult(mv, child.getter);
+        }
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private static void generateLoadingOverride(ClassWriter cw, String className, String superName, Method method) {
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, method.getName(), Type.getMethodDescriptor(method), null,
+                exceptionNames(method));
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKESPECIAL, className, "$loadAll", "()V", false);
+        callSuper(mv, superName, method);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /*
+     * return super.method(arguments...)
+     */
+    private static void callSuper(MethodVisitor mv, String superName, Method method) {
+        mv.visitVarInsn(ALOAD, 0);
+        int local = 1;
+        for (Type argument : Type.getArgumentTypes(method)) {
+            mv.visitVarInsn(argument.getOpcode(ILOAD), local);
+            local += argument.getSize();
+        }
+        invokeSuper(mv, superName, method);
+        mv.visitInsn(Type.getType(method.getReturnType()).getOpcode(IRETURN));
+    }
+
+    private static void invokeSuper(MethodVisitor mv, String superName, Method method) {
+        mv.visitMethodInsn(INVOKESPECIAL, superName, method.getName(), Type.getMethodDescriptor(method), false);
+    }
+
+    private static String[] exceptionNames(Method method) {
+        Class<?>[] exceptionTypes = method.getExceptionTypes();
+        String[] names = new String[exceptionTypes.length];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = Type.getInternalName(exceptionTypes[i]);
+        }
+        return names;
+    }
+
+    private static String loadedField(BeanProperty child) {
+        return "loaded$" + child.name;
+    }
+}
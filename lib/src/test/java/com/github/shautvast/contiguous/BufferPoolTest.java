@@ -0,0 +1,118 @@
+package com.github.shautvast.contiguous;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BufferPoolTest {
+
+    @Test
+    void testSizeClasses() {
+        BufferPool pool = new BufferPool(1 << 20);
+        assertEquals(4096, pool.get(100).capacity());
+        assertEquals(8192, pool.get(4097).capacity());
+        ByteBuffer buffer = pool.get(6000);
+        assertEquals(8192, buffer.capacity());
+        assertEquals(3, pool.getMisses());
+
+        // the odd sizes of 1.5x growth land in the same size class
+        pool.release(buffer);
+        assertSame(buffer, pool.get(7000));
+        assertEquals(1, pool.getHits());
+    }
+
+    @Test
+    void testExclusiveCheckout() {
+        BufferPool pool = new BufferPool(1 << 30);
+        ByteBuffer buffer = pool.get(1 << 20);
+        pool.release(buffer);
+        assertSame(buffer, pool.get(1 << 20));
+        assertNotSame(buffer, pool.get(1 << 20));
+        assertEquals(0, pool.getRetainedBytes());
+    }
+
+    @Test
+    void testBudget() {
+        BufferPool pool = new BufferPool(3 << 20);
+        ByteBuffer small1 = pool.get(1 << 20);
+        ByteBuffer small2 = pool.get(1 << 20);
+        ByteBuffer large = pool.get(2 << 20);
+        pool.release(small1);
+        pool.release(small2);
+        assertEquals(2 << 20, pool.getRetainedBytes());
+
+        // a small one makes room
+        pool.release(large);
+        assertEquals(1, pool.getEvictions());
+        assertEquals(3 << 20, pool.getRetainedBytes());
+
+        // the large one makes room for a small one
+        pool.release(ByteBuffer.allocate(1 << 20));
+        assertEquals(2, pool.getEvictions());
+        assertEquals(2 << 20, pool.getRetainedBytes());
+
+        // no other size class left to evict, so the buffer is dropped
+        pool.release(ByteBuffer.allocate(1 << 20));
+        pool.release(ByteBuffer.allocate(1 << 20));
+        assertEquals(2, pool.getEvictions());
+        assertEquals(3 << 20, pool.getRetainedBytes());
+    }
+
+    @Test
+    void testLargerThanBudget() {
+        BufferPool pool = new BufferPool(3 << 20);
+        pool.release(ByteBuffer.allocate(1 << 20));
+        pool.release(ByteBuffer.allocate(2 << 20));
+        assertEquals(3 << 20, pool.getRetainedBytes());
+
+        // can never fit, so the pool is left alone
+        pool.release(ByteBuffer.allocate(4 << 20));
+        assertEquals(0, pool.getEvictions());
+        assertEquals(3 << 20, pool.getRetainedBytes());
+    }
+
+    @Test
+    void testNotPooled() {
+        BufferPool pool = new BufferPool(1 << 30);
+        pool.release(ByteBuffer.allocate(100_000));
+        pool.release(ByteBuffer.allocateDirect(1 << 20));
+        assertEquals(0, pool.getRetainedBytes());
+    }
+
+    @Test
+    void testConcurrentCheckout() throws Exception {
+        BufferPool pool = new BufferPool(64 << 20);
+        Set<ByteBuffer> inUse = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                workers.add(executor.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        ByteBuffer buffer = pool.get(4096 << (i % 6));
+                        assertTrue(inUse.add(buffer), "handed out twice");
+                        inUse.remove(buffer);
+                        pool.release(buffer);
+                    }
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(80_000, pool.getHits() + pool.getMisses());
+        assertTrue(pool.getRetainedBytes() <= pool.getMaxRetainedBytes());
+    }
+}
@@ -0,0 +1,124 @@
+package com.github.shautvast.contiguous;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConcurrentContiguousListTest {
+
+    @Test
+    void testAddAndGet() {
+        ConcurrentContiguousList<NestedBean> list = new ConcurrentContiguousList<>(NestedBean.class);
+        assertTrue(list.isEmpty());
+        list.add(new NestedBean(new StringBean("Slartibartfast"), new IntBean(42)));
+        assertEquals(1, list.size());
+        assertEquals(new NestedBean(new StringBean("Slartibartfast"), new IntBean(42)), list.get(0));
+        assertThrows(IndexOutOfBoundsException.class, () -> list.get(1));
+    }
+
+    @Test
+    void testLargeElements() {
+        ConcurrentContiguousList<String> list = new ConcurrentContiguousList<>(String.class);
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 100_000; i++) {
+            large.append((char) ('a' + i % 26));
+        }
+        for (int i = 0; i < 100; i++) {
+            list.add("small " + i);
+            list.add(large.toString());
+        }
+        for (int i = 0; i < 100; i++) {
+            assertEquals("small " + i, list.get(2 * i));
+            assertEquals(large.toString(), list.get(2 * i + 1));
+        }
+    }
+
+    @Test
+    void testConcurrentAdds() throws Exception {
+        ConcurrentContiguousList<NestedBean> list = new ConcurrentContiguousList<>(NestedBean.class);
+        int threads = 8;
+        int perThread = 20_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> producers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                producers.add(executor.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        list.add(new NestedBean(new StringBean("Thread " + thread), new IntBean(i)));
+                        // whatever is visible is complete. That may not include this element yet,
+                        // when an element before it is still being written by another thread
+                        int size = list.size();
+                        if (size > 0) {
+                            assertNotNull(list.get(size - 1).getStringBean().getName());
+                        }
+                    }
+                }));
+            }
+            for (Future<?> producer : producers) {
+                producer.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(threads * perThread, list.size());
+        Set<String> seen = new HashSet<>();
+        int[] last = new int[threads];
+        Arrays.fill(last, -1);
+        for (NestedBean bean : list) {
+            assertTrue(seen.add(bean.getStringBean().getName() + "/" + bean.getIntBean().getValue()));
+            // the elements of one thread are in the order they were added
+            int thread = Integer.parseInt(bean.getStringBean().getName().substring(7));
+            assertEquals(last[thread] + 1, bean.getIntBean().getValue());
+            last[thread]++;
+        }
+    }
+
+    @Test
+    void testCollectedAfterRead() throws Exception {
+        WeakReference<ConcurrentContiguousList<NestedBean>> reference = new WeakReference<>(readList());
+        for (int i = 0; i < 100 && reference.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(reference.get(), "a list that was read is not collected");
+    }
+
+    @Test
+    void testScratchCollectedWhileThreadLives() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // the scratch list refers to the element class, so a thread that outlives the list must not keep it
+            WeakReference<ContiguousList<NestedBean>> reference = executor.submit(() -> {
+                ContiguousList<NestedBean> scratch = readList().peekScratch();
+                assertNotNull(scratch);
+                return new WeakReference<>(scratch);
+            }).get();
+            for (int i = 0; i < 100 && reference.get() != null; i++) {
+                System.gc();
+                Thread.sleep(10);
+            }
+            assertNull(reference.get(), "the scratch list of a list that is gone is kept by the thread that used it");
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static ConcurrentContiguousList<NestedBean> readList() {
+        ConcurrentContiguousList<NestedBean> list = new ConcurrentContiguousList<>(NestedBean.class);
+        list.add(new NestedBean(new StringBean("Slartibartfast"), new IntBean(42)));
+        assertEquals(42, list.get(0).getIntBean().getValue());
+        return list;
+    }
+}
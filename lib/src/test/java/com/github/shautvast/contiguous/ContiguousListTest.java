@@ -2,8 +2,22 @@ package com.github.shautvast.contiguous;
 
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
 import java.math.BigInteger;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -94,6 +108,37 @@ public class ContiguousListTest {
         assertEquals(expected, beanList.get(0));
     }
 
+    @Test
+    public void testLongValues() {
+        long[] values = {0, 1, -1, 127, -128, 128, 32767, -32769, 8388607, 8388608, Integer.MAX_VALUE, Integer.MIN_VALUE,
+                140737488355327L, 140737488355328L, Long.MAX_VALUE, Long.MIN_VALUE};
+        ContiguousList<Long> longs = new ContiguousList<>(Long.class);
+        for (long value : values) {
+            longs.add(value);
+        }
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(values[i], longs.get(i));
+        }
+    }
+
+    @Test
+    public void testUtf8String() {
+        String[] values = {"", "ascii", "caf\u00e9", "\u20ac 42", "\ud83d\ude80 to Magrathea", "unpaired \ud83d"};
+        ContiguousList<String> strings = new ContiguousList<>(String.class);
+        for (String value : values) {
+            strings.add(value);
+        }
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        for (String value : values) {
+            byte[] utf = value.getBytes(StandardCharsets.UTF_8);
+            byte[] type = Varint.write(((long) utf.length << 1) + 13);
+            expected.write(type, 0, type.length);
+            expected.write(utf, 0, utf.length);
+        }
+        assertArrayEquals(expected.toByteArray(), strings.getData());
+        assertEquals("\ud83d\ude80 to Magrathea", strings.get(4));
+    }
+
     @Test
     public void testFloat() {
         ContiguousList<FloatBean> beanList = new ContiguousList<>(FloatBean.class);
@@ -139,6 +184,151 @@ public class ContiguousListTest {
         }
     }
 
+    @Test
+    public void testClear() {
+        ContiguousList<StringBean> beanList = new ContiguousList<>(StringBean.class);
+        for (int i = 0; i < 100; i++) {
+            beanList.add(new StringBean("Zaphod " + i));
+        }
+        beanList.clear();
+        assertTrue(beanList.isEmpty());
+
+        beanList.add(new StringBean("Trillian"));
+        assertEquals(1, beanList.size());
+        assertEquals("Trillian", beanList.get(0).getName());
+    }
+
+    @Test
+    public void testOffHeap() {
+        try (ContiguousList<NestedBean> beanList = new ContiguousList<>(NestedBean.class, Storage.OFF_HEAP)) {
+            for (int i = 0; i < 1000; i++) { // forces the buffer to grow
+                beanList.add(new NestedBean(new StringBean("Slartibartfast " + i), new IntBean(i)));
+            }
+            assertEquals(1000, beanList.size());
+            for (int i = 0; i < 1000; i++) {
+                assertEquals(new NestedBean(new StringBean("Slartibartfast " + i), new IntBean(i)), beanList.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testColumnar() {
+        ContiguousList<NestedBean> beanList = new ContiguousList<>(NestedBean.class, Layout.COLUMNAR);
+        for (int i = 0; i < 1000; i++) {
+            beanList.add(new NestedBean(new StringBean("Agrajag " + i), new IntBean(i)));
+        }
+        assertEquals(1000, beanList.size());
+        assertEquals(new NestedBean(new StringBean("Agrajag 500"), new IntBean(500)), beanList.get(500));
+        assertEquals("{stringBean:{\"name\": \"Agrajag 1\"}, intBean:{\"value\": 1}}", beanList.getAsJson(1));
+
+        Iterator<?> values = beanList.valueIterator();
+        assertEquals("Agrajag 0", values.next());
+        assertEquals(0, values.next());
+        assertEquals("Agrajag 1", values.next());
+    }
+
+    @Test
+    public void testFixedWidth() {
+        ContiguousList<NumbersBean> beanList = new ContiguousList<>(NumbersBean.class, Layout.FIXED_WIDTH);
+        for (int i = 0; i < 1000; i++) {
+            beanList.add(new NumbersBean((byte) i, (short) -i, i, i * 1_000_000_000L, i / 2F, i % 3 == 0 ? null : i / 4.0));
+        }
+        assertEquals(1000, beanList.size());
+        assertEquals(new NumbersBean((byte) 42, (short) -42, 42, 42_000_000_000L, 21F, null), beanList.get(42));
+        assertEquals(new NumbersBean((byte) 1, (short) -1, 1, 1_000_000_000L, 0.5F, 0.25), beanList.get(1));
+        // 6 values, each with a type byte: (1 + 1) + (1 + 2) + (1 + 4) + (1 + 8) + (1 + 4) + (1 + 8)
+        assertEquals(1000 * 33, beanList.getData().length);
+
+        Iterator<?> longs = beanList.propertyIterator("longValue");
+        assertEquals(0L, longs.next());
+        assertEquals(1_000_000_000L, longs.next());
+    }
+
+    @Test
+    public void testFixedWidthNotPossible() {
+        assertThrows(IllegalArgumentException.class, () -> new ContiguousList<>(NestedBean.class, Layout.FIXED_WIDTH));
+    }
+
+    @Test
+    public void testColumnarGrowth() {
+        ContiguousList<NestedBean> beanList = new ContiguousList<>(NestedBean.class, Layout.COLUMNAR);
+        for (int i = 0; i < 10_000; i++) { // all columns grow a couple of times
+            beanList.add(new NestedBean(new StringBean("Agrajag " + i), new IntBean(i)));
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(new NestedBean(new StringBean("Agrajag " + i), new IntBean(i)), beanList.get(i));
+        }
+    }
+
+    @Test
+    public void testPropertyIterator() {
+        for (Layout layout : new Layout[]{Layout.ROW, Layout.COLUMNAR}) {
+            ContiguousList<NestedBean> beanList = new ContiguousList<>(NestedBean.class, layout);
+            for (int i = 0; i < 100; i++) {
+                beanList.add(new NestedBean(new StringBean("Agrajag " + i), new IntBean(i)));
+            }
+            int expected = 0;
+            for (Iterator<?> values = beanList.propertyIterator("intBean.value"); values.hasNext(); ) {
+                assertEquals(expected++, values.next());
+            }
+            assertEquals(100, expected);
+        }
+    }
+
+    @Test
+    public void testTypedAccessors() {
+        for (Layout layout : new Layout[]{Layout.ROW, Layout.COLUMNAR}) {
+            ContiguousList<NestedBean> beanList = new ContiguousList<>(NestedBean.class, layout);
+            for (int i = 0; i < 100; i++) {
+                beanList.add(new NestedBean(new StringBean(i == 7 ? null : "Hotblack " + i), new IntBean(i * 1000)));
+            }
+            PropertyHandle name = beanList.getPropertyHandle("stringBean.name");
+            PropertyHandle value = beanList.getPropertyHandle("intBean.value");
+            assertEquals(String.class, name.getType());
+
+            assertEquals("Hotblack 42", beanList.getString(42, name));
+            assertEquals(42_000, beanList.getInt(42, value));
+            assertEquals(42_000L, beanList.getLong(42, value));
+            assertEquals(42_000.0, beanList.getDouble(42, value));
+            assertTrue(beanList.isNull(7, name));
+            assertNull(beanList.getString(7, name));
+            assertThrows(IllegalStateException.class, () -> beanList.getLong(0, name));
+        }
+        assertThrows(IllegalArgumentException.class, () -> new ContiguousList<>(NestedBean.class).getPropertyHandle("intBean.nope"));
+    }
+
+    @Test
+    public void testFieldOffsetTable() {
+        ContiguousList<NumbersBean> beanList = new ContiguousList<>(NumbersBean.class);
+        for (int i = 0; i < 50; i++) {
+            beanList.add(new NumbersBean((byte) i, (short) i, i, i * 3L, i, (double) i));
+        }
+        beanList.enableFieldOffsetTable(); // existing elements
+        for (int i = 50; i < 100; i++) {
+            beanList.add(new NumbersBean((byte) i, (short) i, i, i * 3L, i, i % 2 == 0 ? null : (double) i));
+        }
+        PropertyHandle longValue = beanList.getPropertyHandle("longValue");
+        PropertyHandle doubleValue = beanList.getPropertyHandle("doubleValue");
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i * 3L, beanList.getLong(i, longValue));
+            assertEquals(i >= 50 && i % 2 == 0, beanList.isNull(i, doubleValue));
+        }
+        assertEquals(new NumbersBean((byte) 99, (short) 99, 99, 297L, 99, 99.0), beanList.get(99));
+    }
+
+    @Test
+    public void testTypedAccessorsFixedWidth() {
+        ContiguousList<NumbersBean> beanList = new ContiguousList<>(NumbersBean.class, Layout.FIXED_WIDTH);
+        beanList.add(new NumbersBean((byte) 1, (short) 2, 3, 4L, 5F, null));
+        assertEquals(3, beanList.getInt(0, beanList.getPropertyHandle("intValue")));
+        assertEquals(5.0, beanList.getDouble(0, beanList.getPropertyHandle("floatValue")));
+        assertThrows(NullPointerException.class, () -> beanList.getDouble(0, beanList.getPropertyHandle("doubleValue")));
+
+        ContiguousList<Long> longs = new ContiguousList<>(Long.class);
+        longs.add(Long.MIN_VALUE);
+        assertEquals(Long.MIN_VALUE, longs.getLong(0, longs.getPropertyHandle("")));
+    }
+
     @Test
     public void testBigInteger() {
         ContiguousList<BigInteger> bigIntegers = new ContiguousList<>(BigInteger.class);
@@ -233,4 +423,708 @@ public class ContiguousListTest {
             strings3.add("...................");
         }
     }
+
+    @Test
+    void testGeneratedCodec() {
+        ContiguousList<DeepBean> beanList = new ContiguousList<>(DeepBean.class);
+        assertTrue(beanList.hasCodec());
+        beanList.add(new DeepBean(new NestedBean(new StringBean("Zaphod"), new IntBean(2)), 42L, new StringBean("Beeblebrox")));
+        beanList.add(new DeepBean(new NestedBean(new StringBean(null), new IntBean(-1)), null, new StringBean("")));
+
+        assertEquals(new DeepBean(new NestedBean(new StringBean("Zaphod"), new IntBean(2)), 42L, new StringBean("Beeblebrox")), beanList.get(0));
+        assertEquals(new DeepBean(new NestedBean(new StringBean(null), new IntBean(-1)), null, new StringBean("")), beanList.get(1));
+
+        ContiguousList<NumbersBean> numbers = new ContiguousList<>(NumbersBean.class, Layout.FIXED_WIDTH);
+        assertTrue(numbers.hasCodec());
+        numbers.add(new NumbersBean((byte) -1, Short.MIN_VALUE, Integer.MAX_VALUE, Long.MIN_VALUE, 1.5F, null));
+        assertEquals(new NumbersBean((byte) -1, Short.MIN_VALUE, Integer.MAX_VALUE, Long.MIN_VALUE, 1.5F, null), numbers.get(0));
+    }
+
+    @Test
+    void testWriteJson() throws IOException {
+        for (Layout layout : new Layout[]{Layout.ROW, Layout.COLUMNAR}) {
+            ContiguousList<DeepBean> beanList = new ContiguousList<>(DeepBean.class, layout);
+            beanList.add(new DeepBean(new NestedBean(new StringBean("\"Zaphod\"\n\u00e9\\"), new IntBean(-2)), Long.MIN_VALUE, new StringBean(null)));
+            beanList.add(new DeepBean(new NestedBean(new StringBean("Trillian"), new IntBean(0)), null, new StringBean("\u0001")));
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            beanList.writeJson(out);
+            assertEquals("[{\"nestedBean\": {\"stringBean\": {\"name\": \"\\\"Zaphod\\\"\\n\u00e9\\\\\"}, \"intBean\": {\"value\": -2}}, " +
+                            "\"ageOfMagrathea\": -9223372036854775808, \"stringBean\": {\"name\": null}}," +
+                            "{\"nestedBean\": {\"stringBean\": {\"name\": \"Trillian\"}, \"intBean\": {\"value\": 0}}, " +
+                            "\"ageOfMagrathea\": null, \"stringBean\": {\"name\": \"\\u0001\"}}]",
+                    new String(out.toByteArray(), StandardCharsets.UTF_8));
+
+            out.reset();
+            beanList.writeJson(1, out);
+            assertEquals("{\"nestedBean\": {\"stringBean\": {\"name\": \"Trillian\"}, \"intBean\": {\"value\": 0}}, " +
+                            "\"ageOfMagrathea\": null, \"stringBean\": {\"name\": \"\\u0001\"}}",
+                    new String(out.toByteArray(), StandardCharsets.UTF_8));
+            assertThrows(IndexOutOfBoundsException.class, () -> beanList.writeJson(2, new ByteArrayOutputStream()));
+        }
+
+        ContiguousList<NumbersBean> numbers = new ContiguousList<>(NumbersBean.class, Storage.OFF_HEAP);
+        numbers.add(new NumbersBean((byte) 1, (short) 300, 123456789, 1L << 40, 0.1F, 2.5));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        numbers.writeJson(Channels.newChannel(out));
+        assertEquals("[{\"byteValue\": 1, \"shortValue\": 300, \"intValue\": 123456789, \"longValue\": 1099511627776, " +
+                "\"floatValue\": 0.1, \"doubleValue\": 2.5}]", new String(out.toByteArray(), StandardCharsets.UTF_8));
+        numbers.close();
+    }
+
+    @Test
+    void testElementView() {
+        for (Layout layout : new Layout[]{Layout.ROW, Layout.COLUMNAR}) {
+            ContiguousList<NestedBean> beanList = new ContiguousList<>(NestedBean.class, layout);
+            for (int i = 0; i < 100; i++) {
+                beanList.add(new NestedBean(new StringBean(i == 7 ? null : "Marvin " + i), new IntBean(i)));
+            }
+            PropertyHandle name = beanList.getPropertyHandle("stringBean.name");
+            PropertyHandle value = beanList.getPropertyHandle("intBean.value");
+
+            ElementView<NestedBean> view = beanList.view();
+            assertEquals(-1, view.getIndex());
+            assertThrows(IllegalStateException.class, () -> view.getInt(value));
+            int count = 0;
+            while (view.next()) {
+                // read in any order, and more than once
+                assertEquals(count, view.getInt(value));
+                assertEquals(count == 7, view.isNull(name));
+                assertEquals(count == 7 ? null : "Marvin " + count, view.getString(name));
+                assertEquals(count, view.getLong(value));
+                count++;
+            }
+            assertEquals(100, count);
+            assertEquals(99, view.getIndex());
+
+            assertEquals(new NestedBean(new StringBean("Marvin 42"), new IntBean(42)), view.moveTo(42).get());
+            assertEquals("Marvin 3", view.moveTo(3).getString(name));
+            assertThrows(IndexOutOfBoundsException.class, () -> view.moveTo(100));
+
+            if (layout == Layout.ROW) {
+                beanList.enableFieldOffsetTable();
+                assertEquals(55, view.moveTo(55).getInt(value));
+            }
+        }
+    }
+
+    @Test
+    void testLazyElements() {
+        ContiguousList<DeepBean> beanList = new ContiguousList<>(DeepBean.class);
+        beanList.enableLazyElements();
+        beanList.add(new DeepBean(new NestedBean(new StringBean("Arthur"), new IntBean(42)), null, new StringBean("Dent")));
+        beanList.add(new DeepBean(new NestedBean(new StringBean("Ford"), new IntBean(-1)), 4L, new StringBean("Prefect")));
+
+        DeepBean ford = beanList.get(1);
+        assertEquals("DeepBean$Contiguous", ford.getClass().getSimpleName());
+        assertEquals("Prefect", ford.getStringBean().getName());
+        assertEquals(-1, ford.getNestedBean().getIntBean().getValue());
+        assertEquals(4L, ford.getAgeOfMagrathea());
+
+        // set values win over stored ones
+        DeepBean arthur = beanList.get(0);
+        arthur.setAgeOfMagrathea(7L);
+        arthur.getNestedBean().setStringBean(new StringBean("Zaphod"));
+        assertEquals(new DeepBean(new NestedBean(new StringBean("Zaphod"), new IntBean(42)), 7L, new StringBean("Dent")), arthur);
+
+        // equals, hashCode and toString see all values
+        DeepBean expected = new DeepBean(new NestedBean(new StringBean("Arthur"), new IntBean(42)), null, new StringBean("Dent"));
+        assertEquals(expected, beanList.get(0));
+        assertEquals(expected.hashCode(), beanList.get(0).hashCode());
+        assertEquals(expected.toString(), beanList.get(0).toString());
+
+        assertThrows(IllegalStateException.class, () -> new ContiguousList<>(String.class).enableLazyElements());
+    }
+
+    @Test
+    void testParallelStream() {
+        for (Layout layout : new Layout[]{Layout.ROW, Layout.COLUMNAR}) {
+            ContiguousList<NestedBean> beanList = new ContiguousList<>(NestedBean.class, layout);
+            for (int i = 0; i < 10_000; i++) {
+                beanList.add(new NestedBean(new StringBean("Deep Thought " + i), new IntBean(i)));
+            }
+            Spliterator<NestedBean> spliterator = beanList.spliterator();
+            assertTrue(spliterator.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.ORDERED));
+            Spliterator<NestedBean> prefix = spliterator.trySplit();
+            assertEquals(5_000, prefix.estimateSize());
+            assertEquals(5_000, spliterator.estimateSize());
+
+            List<String> names = beanList.parallelStream()
+                    .map(bean -> bean.getStringBean().getName())
+                    .collect(Collectors.toList());
+            assertEquals(10_000, names.size());
+            for (int i = 0; i < names.size(); i++) {
+                assertEquals("Deep Thought " + i, names.get(i));
+            }
+            assertEquals(49_995_000L, beanList.parallelStream().mapToLong(bean -> bean.getIntBean().getValue()).sum());
+        }
+    }
+
+    @Test
+    void testAddAllParallel() {
+        List<NestedBean> beans = new ArrayList<>();
+        for (int i = 0; i < 50_000; i++) {
+            beans.add(new NestedBean(new StringBean(i % 7 == 0 ? null : "Zaphod " + i), new IntBean(i)));
+        }
+        for (Layout layout : new Layout[]{Layout.ROW, Layout.COLUMNAR}) {
+            ContiguousList<NestedBean> expected = new ContiguousList<>(NestedBean.class, layout);
+            ContiguousList<NestedBean> beanList = new ContiguousList<>(NestedBean.class, layout);
+            // the segments go after what is already there
+            expected.add(new NestedBean(new StringBean("first"), new IntBean(-1)));
+            beanList.add(new NestedBean(new StringBean("first"), new IntBean(-1)));
+            expected.addAll(beans);
+            beanList.addAllParallel(beans);
+
+            assertEquals(50_001, beanList.size());
+            assertArrayEquals(expected.toArray(), beanList.toArray());
+            PropertyHandle value = beanList.getPropertyHandle("intBean.value");
+            assertEquals(49_999, beanList.getInt(50_000, value));
+        }
+
+        ContiguousList<NestedBean> withTable = new ContiguousList<>(NestedBean.class);
+        withTable.enableFieldOffsetTable();
+        withTable.add(new NestedBean(new StringBean("first"), new IntBean(-1)));
+        withTable.addAllParallel(beans);
+        PropertyHandle value = withTable.getPropertyHandle("intBean.value");
+        for (int i = 0; i < beans.size(); i++) {
+            assertEquals(i, withTable.getInt(i + 1, value));
+        }
+    }
+
+    @Test
+    void testAddAllParallelFixedWidth() {
+        List<NumbersBean> beans = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            beans.add(new NumbersBean((byte) i, (short) -i, i, i * 1_000_000_000L, i / 2F, i % 3 == 0 ? null : i / 4.0));
+        }
+        ContiguousList<NumbersBean> beanList = new ContiguousList<>(NumbersBean.class, Layout.FIXED_WIDTH);
+        beanList.addAllParallel(beans);
+        assertEquals(20_000, beanList.size());
+        assertEquals(20_000 * 33, beanList.getData().length);
+        assertEquals(beans.get(12_345), beanList.get(12_345));
+    }
+
+    @Test
+    void testPagedStorage() {
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 3000; i++) {
+            large.append((char) ('a' + i % 26));
+        }
+        for (Layout layout : new Layout[]{Layout.ROW, Layout.COLUMNAR}) {
+            ContiguousList<NestedBean> beanList = new ContiguousList<>(NestedBean.class, Storage.paged(Storage.HEAP, 1024), layout);
+            if (layout == Layout.ROW) {
+                beanList.enableFieldOffsetTable();
+            }
+            PropertyHandle value = beanList.getPropertyHandle("intBean.value");
+            for (int round = 0; round < 2; round++) { // and again after clear
+                for (int i = 0; i < 1000; i++) {
+                    // every now and then an element that is larger than a page
+                    String name = i % 100 == 0 ? large.toString() : "Marvin " + i;
+                    beanList.add(new NestedBean(new StringBean(name), new IntBean(i)));
+                }
+                assertEquals(1000, beanList.size());
+                for (int i = 0; i < 1000; i++) {
+                    String name = i % 100 == 0 ? large.toString() : "Marvin " + i;
+                    assertEquals(new NestedBean(new StringBean(name), new IntBean(i)), beanList.get(i));
+                    assertEquals(i, beanList.getInt(i, value));
+                }
+                beanList.clear();
+            }
+        }
+        assertThrows(IllegalArgumentException.class, () -> Storage.paged(Storage.HEAP, 1000));
+        assertThrows(IllegalArgumentException.class,
+                () -> new ContiguousList<>(NumbersBean.class, Storage.paged(Storage.HEAP, 1024), Layout.FIXED_WIDTH));
+    }
+
+    @Test
+    void testPagedAddAllParallel() {
+        List<NestedBean> beans = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            beans.add(new NestedBean(new StringBean("Trillian " + i), new IntBean(i)));
+        }
+        ContiguousList<NestedBean> beanList = new ContiguousList<>(NestedBean.class, Storage.paged(Storage.HEAP, 4096));
+        beanList.addAllParallel(beans);
+        ElementView<NestedBean> view = beanList.view();
+        PropertyHandle name = beanList.getPropertyHandle("stringBean.name");
+        PropertyHandle value = beanList.getPropertyHandle("intBean.value");
+        for (int i = 0; i < beans.size(); i++) {
+            view.next();
+            assertEquals("Trillian " + i, view.getString(name));
+            assertEquals(i, view.getInt(value));
+        }
+        assertEquals(beans, new ArrayList<>(beanList));
+    }
+
+    @Test
+    void testCompress() throws Exception {
+        for (Layout layout : new Layout[]{Layout.ROW, Layout.COLUMNAR}) {
+            ContiguousList<NestedBean> beanList = new ContiguousList<>(NestedBean.class, Storage.paged(Storage.HEAP, 4096), layout);
+            for (int i = 0; i < 10_000; i++) {
+                beanList.add(new NestedBean(new StringBean("Slartibartfast " + i % 10), new IntBean(i)));
+            }
+            byte[] data = layout == Layout.ROW ? beanList.getData() : null;
+            beanList.compress(2);
+            if (data != null) {
+                assertArrayEquals(data, beanList.getData());
+            }
+
+            // more readers than cached pages
+            PropertyHandle value = beanList.getPropertyHandle("intBean.value");
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            try {
+                List<Future<?>> readers = new ArrayList<>();
+                for (int t = 0; t < 4; t++) {
+                    int offset = t * 2_500;
+                    readers.add(executor.submit(() -> {
+                        for (int i = 0; i < 10_000; i++) {
+                            int index = (i + offset) % 10_000;
+                            assertEquals(index, beanList.getInt(index, value));
+                            assertEquals(new NestedBean(new StringBean("Slartibartfast " + index % 10), new IntBean(index)), beanList.get(index));
+                        }
+                    }));
+                }
+                for (Future<?> reader : readers) {
+                    reader.get();
+                }
+            } finally {
+                executor.shutdown();
+            }
+
+            // can still be added to, and compressed again
+            for (int i = 10_000; i < 20_000; i++) {
+                beanList.add(new NestedBean(new StringBean("Slartibartfast " + i % 10), new IntBean(i)));
+            }
+            beanList.compress(2);
+            for (int i = 0; i < 20_000; i++) {
+                assertEquals(i, beanList.getInt(i, value));
+            }
+            beanList.clear();
+            beanList.add(new NestedBean(new StringBean("Slartibartfast"), new IntBean(1)));
+            assertEquals(1, beanList.getInt(0, value));
+        }
+        assertThrows(IllegalStateException.class, () -> new ContiguousList<>(NestedBean.class).compress(2));
+    }
+
+    @Test
+    void testDictionary() throws IOException {
+        String[] planets = {"Earth", "Magrathea", "\"Vogsphere\"", null};
+        for (Layout layout : new Layout[]{Layout.ROW, Layout.COLUMNAR}) {
+            ContiguousList<NestedBean> plain = new ContiguousList<>(NestedBean.class, layout);
+            ContiguousList<NestedBean> beanList = new ContiguousList<>(NestedBean.class, layout);
+            beanList.enableDictionary("stringBean.name");
+            for (int i = 0; i < 1000; i++) {
+                plain.add(new NestedBean(new StringBean(planets[i % 4]), new IntBean(i)));
+                beanList.add(new NestedBean(new StringBean(planets[i % 4]), new IntBean(i)));
+            }
+            if (layout == Layout.ROW) {
+                assertTrue(beanList.getData().length < plain.getData().length * 2 / 3);
+            }
+            assertArrayEquals(plain.toArray(), beanList.toArray());
+            assertEquals(plain.getAsJson(2), beanList.getAsJson(2));
+
+            PropertyHandle name = beanList.getPropertyHandle("stringBean.name");
+            assertEquals("Magrathea", beanList.getString(1, name));
+            assertNull(beanList.getString(3, name));
+            ElementView<NestedBean> view = beanList.view().moveTo(2);
+            assertEquals("\"Vogsphere\"", view.getString(name));
+            Iterator<?> values = beanList.valueIterator();
+            assertEquals("Earth", values.next());
+            assertEquals(0, values.next());
+
+            ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            plain.writeJson(expected);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            beanList.writeJson(out);
+            assertArrayEquals(expected.toByteArray(), out.toByteArray());
+        }
+
+        // the segments share the dictionary
+        List<NestedBean> beans = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            beans.add(new NestedBean(new StringBean(planets[i % 4]), new IntBean(i)));
+        }
+        ContiguousList<NestedBean> beanList = new ContiguousList<>(NestedBean.class);
+        beanList.enableDictionary("stringBean.name");
+        beanList.addAllParallel(beans);
+        assertEquals(beans, new ArrayList<>(beanList));
+
+        ContiguousList<DeepBean> lazy = new ContiguousList<>(DeepBean.class);
+        lazy.enableDictionary("stringBean.name");
+        lazy.enableLazyElements();
+        lazy.add(new DeepBean(new NestedBean(new StringBean("Arthur"), new IntBean(42)), null, new StringBean("Dent")));
+        assertEquals("Dent", lazy.get(0).getStringBean().getName());
+
+        assertThrows(IllegalArgumentException.class, () -> beanList.enableDictionary("intBean.value"));
+        assertThrows(IllegalStateException.class, () -> beanList.enableDictionary("stringBean.name"));
+    }
+
+    @Test
+    void testSortBy() {
+        // the first 8 bytes of Magrathea-1 and -2 are the same
+        String[] names = {"Magrathea-2", "Earth", null, "Magrathea-1", "Vogsphere", "Ursa Minor"};
+        List<NestedBean> beans = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            beans.add(new NestedBean(new StringBean(names[i % 6]), new IntBean(i * 7919 % 100 - 50)));
+        }
+        List<NestedBean> expected = new ArrayList<>(beans);
+        expected.sort(Comparator.comparing((NestedBean bean) -> bean.getStringBean().getName(),
+                        Comparator.nullsFirst(Comparator.<String>naturalOrder()))
+                .thenComparing(bean -> -bean.getIntBean().getValue()));
+
+        for (ContiguousList<NestedBean> beanList : nestedBeanLists()) {
+            beanList.addAll(beans);
+            beanList.sortBy(SortKey.ascending("stringBean.name"), SortKey.descending("intBean.value"));
+            assertEquals(expected, new ArrayList<>(beanList));
+            beanList.compact();
+            assertEquals(expected, new ArrayList<>(beanList));
+            beanList.add(new NestedBean(new StringBean("Arthur"), new IntBean(42)));
+            assertEquals("Arthur", beanList.get(1000).getStringBean().getName());
+        }
+
+        // stable, and descending on the value alone
+        ContiguousList<NestedBean> beanList = new ContiguousList<>(NestedBean.class);
+        beanList.addAll(beans);
+        beanList.sortBy("intBean.value", true);
+        List<NestedBean> byValue = new ArrayList<>(beans);
+        byValue.sort(Comparator.comparing(bean -> -bean.getIntBean().getValue()));
+        assertEquals(byValue, new ArrayList<>(beanList));
+
+        List<NumbersBean> numbers = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            numbers.add(new NumbersBean((byte) i, (short) -i, i, i, i, i % 3 == 0 ? null : (50 - i) / 4.0));
+        }
+        ContiguousList<NumbersBean> fixedWidth = new ContiguousList<>(NumbersBean.class, Layout.FIXED_WIDTH);
+        fixedWidth.addAll(numbers);
+        fixedWidth.sortBy("doubleValue");
+        numbers.sort(Comparator.comparing(NumbersBean::getDoubleValue, Comparator.nullsFirst(Comparator.<Double>naturalOrder())));
+        assertEquals(numbers, new ArrayList<>(fixedWidth));
+
+        assertThrows(IllegalArgumentException.class, () -> beanList.sortBy("stringBean"));
+
+        // the extremes have the same primary key as null
+        ContiguousList<StringBean> nameList = new ContiguousList<>(StringBean.class);
+        nameList.addAll(Arrays.asList(new StringBean("a"), new StringBean(""), new StringBean(null), new StringBean("b")));
+        nameList.sortBy("name", true);
+        assertEquals(Arrays.asList(new StringBean(null), new StringBean("b"), new StringBean("a"), new StringBean("")),
+                new ArrayList<>(nameList));
+        ContiguousList<LongBean> longs = new ContiguousList<>(LongBean.class);
+        longs.addAll(Arrays.asList(new LongBean(5), new LongBean(Long.MIN_VALUE), new LongBean(Long.MAX_VALUE), new LongBean(7)));
+        longs.sortBy("value", true);
+        assertEquals(Arrays.asList(new LongBean(Long.MAX_VALUE), new LongBean(7), new LongBean(5), new LongBean(Long.MIN_VALUE)),
+                new ArrayList<>(longs));
+        longs.sortBy("value");
+        assertEquals(Arrays.asList(new LongBean(Long.MIN_VALUE), new LongBean(5), new LongBean(7), new LongBean(Long.MAX_VALUE)),
+                new ArrayList<>(longs));
+
+        // code point order, in which U+FFFD comes before the (surrogate pair) U+1F600, not UTF-16 order
+        for (boolean dictionary : new boolean[]{false, true}) {
+            ContiguousList<StringBean> strings = new ContiguousList<>(StringBean.class);
+            if (dictionary) {
+                strings.enableDictionary("name");
+            }
+            strings.add(new StringBean("\uD83D\uDE00"));
+            strings.add(new StringBean("\uFFFD"));
+            strings.add(new StringBean("a"));
+            strings.sortBy("name");
+            assertEquals(Arrays.asList(new StringBean("a"), new StringBean("\uFFFD"), new StringBean("\uD83D\uDE00")),
+                    new ArrayList<>(strings));
+        }
+    }
+
+    @Test
+    void testIndexOf() {
+        String[] names = {"Earth", "Magrathea", null, "Vogsphere"};
+        List<NestedBean> beans = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            beans.add(new NestedBean(new StringBean(names[i % 4]), new IntBean(i % 100)));
+        }
+        for (ContiguousList<NestedBean> beanList : nestedBeanLists()) {
+            beanList.addAll(beans.subList(0, 500));
+            assertEquals(1, beanList.indexOf("stringBean.name", "Magrathea"));
+            assertEquals(2, beanList.indexOf("stringBean.name", null));
+            assertEquals(497, beanList.lastIndexOf("stringBean.name", "Magrathea"));
+            assertEquals(-1, beanList.indexOf("stringBean.name", "Damogran"));
+            assertEquals(42, beanList.indexOf("intBean.value", 42));
+            assertEquals(442, beanList.lastIndexOf("intBean.value", 42));
+
+            // elements added after the index was built
+            beanList.addAll(beans.subList(500, 1000));
+            assertEquals(942, beanList.lastIndexOf("intBean.value", 42));
+            assertTrue(beanList.contains("intBean.value", 99));
+            assertFalse(beanList.contains("intBean.value", 100));
+
+            assertEquals(43, beanList.indexOf(new NestedBean(new StringBean("Vogsphere"), new IntBean(43))));
+            assertEquals(943, beanList.lastIndexOf(new NestedBean(new StringBean("Vogsphere"), new IntBean(43))));
+            assertTrue(beanList.contains(new NestedBean(new StringBean(null), new IntBean(2))));
+            assertFalse(beanList.contains(new NestedBean(new StringBean("Earth"), new IntBean(1))));
+            assertFalse(beanList.contains(new NestedBean(new StringBean("Damogran"), new IntBean(1))));
+            assertFalse(beanList.contains("Earth"));
+            assertTrue(beanList.containsAll(beans.subList(10, 20)));
+
+            beanList.sortBy("intBean.value", true);
+            assertEquals(0, beanList.indexOf("intBean.value", 99));
+            beanList.clear();
+            assertEquals(-1, beanList.indexOf("intBean.value", 99));
+        }
+
+        ContiguousList<NumbersBean> fixedWidth = new ContiguousList<>(NumbersBean.class, Layout.FIXED_WIDTH);
+        fixedWidth.enableHashIndex("doubleValue");
+        for (int i = 0; i < 100; i++) {
+            fixedWidth.add(new NumbersBean((byte) i, (short) -i, i, i, i, i % 3 == 0 ? null : i / 4.0));
+        }
+        assertEquals(0, fixedWidth.indexOf("doubleValue", null));
+        assertEquals(99, fixedWidth.lastIndexOf("doubleValue", null));
+        assertEquals(10, fixedWidth.indexOf("doubleValue", 2.5));
+        assertEquals(50, fixedWidth.indexOf("longValue", 50L));
+        assertEquals(50, fixedWidth.indexOf(new NumbersBean((byte) 50, (short) -50, 50, 50, 50, 12.5)));
+
+        ContiguousList<String> strings = new ContiguousList<>(String.class);
+        strings.enableHashIndex("");
+        strings.addAll(Arrays.asList("Zaphod", "Ford", "Zaphod"));
+        assertEquals(2, strings.lastIndexOf("Zaphod"));
+        assertEquals(1, strings.indexOf("", "Ford"));
+    }
+
+    @Test
+    void testEmptyLists() throws IOException {
+        for (ContiguousList<NestedBean> beanList : nestedBeanLists()) {
+            beanList.sortBy(SortKey.ascending("stringBean.name"), SortKey.descending("intBean.value"));
+            beanList.compact();
+            assertEquals(-1, beanList.indexOf("stringBean.name", "Earth"));
+            assertEquals(-1, beanList.lastIndexOf("intBean.value", 42));
+            assertFalse(beanList.contains(new NestedBean(new StringBean("Earth"), new IntBean(42))));
+            assertEquals(0, beanList.select(Filter.eq("stringBean.name", null)).length);
+            assertTrue(beanList.filter(Filter.gt("intBean.value", 0)).isEmpty());
+            assertEquals(0, beanList.rangeScan("intBean.value", Long.MIN_VALUE, Long.MAX_VALUE).length);
+            assertEquals(0, beanList.sumLong("intBean.value"));
+            assertTrue(Double.isNaN(beanList.avg("intBean.value")));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            beanList.writeJson(out);
+            assertEquals("[]", new String(out.toByteArray(), StandardCharsets.UTF_8));
+
+            beanList.add(new NestedBean(new StringBean("Earth"), new IntBean(42)));
+            assertEquals(0, beanList.indexOf("intBean.value", 42));
+        }
+    }
+
+    /*
+     * empty lists of NestedBean in the row and columnar layouts, with the options that change how values are stored
+     * or found: paged storage, a dictionary (and field offset table) and hash indexes
+     */
+    private static List<ContiguousList<NestedBean>> nestedBeanLists() {
+        List<ContiguousList<NestedBean>> lists = new ArrayList<>();
+        for (Layout layout : new Layout[]{Layout.ROW, Layout.COLUMNAR}) {
+            lists.add(new ContiguousList<>(NestedBean.class, layout));
+            lists.add(new ContiguousList<>(NestedBean.class, Storage.paged(Storage.HEAP, 1024), layout));
+
+            ContiguousList<NestedBean> dictionary = new ContiguousList<>(NestedBean.class, layout);
+            dictionary.enableDictionary("stringBean.name");
+            if (layout == Layout.ROW) {
+                dictionary.enableFieldOffsetTable();
+            }
+            lists.add(dictionary);
+
+            for (String indexed : new String[]{"stringBean.name", "intBean.value"}) {
+                ContiguousList<NestedBean> hashed = new ContiguousList<>(NestedBean.class, layout);
+                hashed.enableDictionary("stringBean.name");
+                hashed.enableHashIndex(indexed);
+                lists.add(hashed);
+            }
+        }
+        return lists;
+    }
+
+    @Test
+    void testRangeScan() {
+        ContiguousList<NestedBean> beanList = new ContiguousList<>(NestedBean.class, Layout.COLUMNAR);
+        for (int i = 0; i < 1000; i++) {
+            beanList.add(new NestedBean(new StringBean("Street " + i), new IntBean(i * 7919 % 1000 - 500)));
+        }
+        int[] found = beanList.rangeScan("intBean.value", 10, 20);
+        assertEquals(11, found.length);
+        for (int i = 0; i < found.length; i++) {
+            assertEquals(10 + i, beanList.get(found[i]).getIntBean().getValue());
+        }
+        assertEquals(0, beanList.rangeScan("intBean.value", 20, 10).length);
+        assertEquals(1000, beanList.rangeScan("intBean.value", Long.MIN_VALUE, Long.MAX_VALUE).length);
+        assertArrayEquals(beanList.rangeScan("intBean.value", -3, 2), beanList.rangeScan("intBean.value", -3.5, 2.5));
+        assertEquals(0, beanList.rangeScan("intBean.value", Double.NaN, 2.5).length);
+        assertEquals(0, beanList.rangeScan("intBean.value", -3.5, Double.NaN).length);
+
+        // added after the index was built, equal values in the order of the elements
+        beanList.add(new NestedBean(new StringBean("Street 1000"), new IntBean(15)));
+        found = beanList.rangeScan("intBean.value", 15, 15);
+        assertEquals(2, found.length);
+        assertEquals(1000, found[1]);
+
+        beanList.sortBy("intBean.value", true);
+        assertEquals(0, beanList.rangeScan("intBean.value", 499, 499)[0]);
+
+        List<NumbersBean> numbers = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            numbers.add(new NumbersBean((byte) i, (short) -i, i, i, i, i % 3 == 0 ? null : (50 - i) / 4.0));
+        }
+        ContiguousList<NumbersBean> fixedWidth = new ContiguousList<>(NumbersBean.class, Layout.FIXED_WIDTH);
+        fixedWidth.addAll(numbers);
+        found = fixedWidth.rangeScan("doubleValue", -1.0, 1.0);
+        assertArrayEquals(new int[]{53, 52, 50, 49, 47, 46}, found); // 48 and 51 are null
+        assertEquals(3, fixedWidth.rangeScan("byteValue", 7, 9).length);
+        assertThrows(IllegalArgumentException.class, () -> beanList.rangeScan("stringBean.name", 1, 2));
+    }
+
+    @Test
+    void testFilter() {
+        String[] names = {"Earth", "Magrathea", null, "Mars", "Vogsphere"};
+        List<NestedBean> beans = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            beans.add(new NestedBean(new StringBean(names[i % 5]), new IntBean(i % 100)));
+        }
+        for (ContiguousList<NestedBean> beanList : nestedBeanLists()) {
+            beanList.addAll(beans);
+
+            Filter filter = Filter.startsWith("stringBean.name", "Ma").and(Filter.lt("intBean.value", 10));
+            List<NestedBean> expected = beans.stream()
+                    .filter(bean -> bean.getStringBean().getName() != null
+                            && bean.getStringBean().getName().startsWith("Ma") && bean.getIntBean().getValue() < 10)
+                    .collect(Collectors.toList());
+            ContiguousList<NestedBean> filtered = beanList.filter(filter);
+            assertEquals(expected, new ArrayList<>(filtered));
+            assertEquals(expected.size(), beanList.select(filter).length);
+            filtered.add(new NestedBean(new StringBean("Arthur"), new IntBean(42)));
+            assertEquals("Arthur", filtered.get(expected.size()).getStringBean().getName());
+
+            assertArrayEquals(new int[]{2, 7, 12}, Arrays.copyOf(beanList.select(Filter.eq("stringBean.name", null)), 3));
+            assertEquals(400, beanList.select(Filter.in("stringBean.name", "Earth", "Mars", "Damogran")).length);
+            assertEquals(600, beanList.select(Filter.in("stringBean.name", "Earth", "Mars").negate()).length);
+            assertEquals(200, beanList.select(Filter.gt("stringBean.name", "Mars")).length);
+            assertEquals(410, beanList.select(Filter.gt("intBean.value", 79).or(Filter.lt("intBean.value", 20.5))).length);
+            assertEquals(0, beanList.select(Filter.eq("intBean.value", 100)).length);
+        }
+
+        ContiguousList<NumbersBean> fixedWidth = new ContiguousList<>(NumbersBean.class, Layout.FIXED_WIDTH);
+        for (int i = 0; i < 100; i++) {
+            fixedWidth.add(new NumbersBean((byte) i, (short) -i, i, i, i, i % 3 == 0 ? null : i / 4.0));
+        }
+        ContiguousList<NumbersBean> filtered = fixedWidth.filter(Filter.gt("doubleValue", 20.0));
+        assertEquals(fixedWidth.get(82), filtered.get(0));
+        assertEquals(12, filtered.size());
+        assertThrows(IllegalArgumentException.class, () -> fixedWidth.select(Filter.lt("doubleValue", "Zaphod")));
+
+        // numbers of another type are converted to the type of the property
+        assertArrayEquals(new int[]{5}, fixedWidth.select(Filter.eq("longValue", 5)));
+        assertArrayEquals(new int[]{5, 6}, fixedWidth.select(Filter.in("byteValue", 5L, 6.0, 6.5, 300)));
+        assertArrayEquals(new int[]{2}, fixedWidth.select(Filter.eq("shortValue", (byte) -2)));
+        assertArrayEquals(new int[]{10}, fixedWidth.select(Filter.eq("doubleValue", 2.5F)));
+        assertArrayEquals(new int[]{7}, fixedWidth.select(Filter.eq("floatValue", 7)));
+        assertEquals(0, fixedWidth.select(Filter.eq("intValue", Long.MAX_VALUE)).length);
+        assertEquals(5, fixedWidth.indexOf("longValue", 5));
+        assertEquals(-1, fixedWidth.indexOf("intValue", Double.NaN));
+        assertTrue(fixedWidth.contains("floatValue", 99L));
+        assertThrows(IllegalArgumentException.class, () -> fixedWidth.select(Filter.eq("longValue", "5")));
+        assertThrows(IllegalArgumentException.class, () -> fixedWidth.indexOf("doubleValue", "2.5"));
+
+        // code point order, with or without dictionary
+        for (boolean dictionary : new boolean[]{false, true}) {
+            ContiguousList<StringBean> strings = new ContiguousList<>(StringBean.class);
+            if (dictionary) {
+                strings.enableDictionary("name");
+            }
+            strings.add(new StringBean("\uD83D\uDE00"));
+            strings.add(new StringBean("\uFFFD"));
+            assertArrayEquals(new int[]{0}, strings.select(Filter.gt("name", "\uFFFD")));
+            assertArrayEquals(new int[]{1}, strings.select(Filter.lt("name", "\uD83D\uDE00")));
+        }
+    }
+
+    @Test
+    void testAggregations() {
+        List<NumbersBean> numbers = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            numbers.add(new NumbersBean((byte) i, (short) -i, i, i * 1_000_000_000L, i / 2F, i % 3 == 0 ? null : i / 4.0));
+        }
+        for (Layout layout : Layout.values()) {
+            ContiguousList<NumbersBean> numbersList = new ContiguousList<>(NumbersBean.class, layout);
+            numbersList.addAll(numbers);
+            assertEquals(499_500, numbersList.sumLong("intValue"));
+            assertEquals(-499_500, numbersList.sumLong("shortValue"));
+            assertEquals(numbers.stream().mapToLong(NumbersBean::getByteValue).sum(), numbersList.sumLong("byteValue"));
+            assertEquals(499_500_000_000_000L, numbersList.sumLong("longValue"));
+            assertEquals(-999, numbersList.minDouble("shortValue"));
+            assertEquals(499.5, numbersList.maxDouble("floatValue"));
+            assertEquals(0.25, numbersList.minDouble("doubleValue"));
+            assertEquals(499.5, numbersList.avg("intValue"));
+            assertEquals(666, numbersList.countNonNull("doubleValue"));
+            assertEquals(numbers.stream().filter(n -> n.getDoubleValue() != null).mapToDouble(NumbersBean::getDoubleValue).sum(),
+                    numbersList.sumDouble("doubleValue"), 1e-9);
+        }
+
+        ContiguousList<NestedBean> beanList = new ContiguousList<>(NestedBean.class, Storage.paged(Storage.HEAP, 1024), Layout.COLUMNAR);
+        for (int i = 0; i < 1000; i++) {
+            beanList.add(new NestedBean(new StringBean(i % 2 == 0 ? null : "Street"), new IntBean(i)));
+        }
+        assertEquals(499_500, beanList.sumLong("intBean.value"));
+        assertEquals(500, beanList.countNonNull("stringBean.name"));
+        assertThrows(IllegalArgumentException.class, () -> beanList.sumLong("stringBean.name"));
+        assertTrue(Double.isNaN(new ContiguousList<>(NestedBean.class).avg("intBean.value")));
+    }
+
+    @Test
+    void testCollectedAfterRead() throws Exception {
+        for (Layout layout : new Layout[]{Layout.ROW, Layout.COLUMNAR}) {
+            WeakReference<ContiguousList<NestedBean>> reference = new WeakReference<>(readList(layout));
+            for (int i = 0; i < 100 && reference.get() != null; i++) {
+                System.gc();
+                Thread.sleep(10);
+            }
+            assertNull(reference.get(), "a list that was read is not collected");
+        }
+    }
+
+    /*
+     * reads the list in all sorts of ways, also on the threads of the common pool
+     */
+    private static ContiguousList<NestedBean> readList(Layout layout) {
+        ContiguousList<NestedBean> beanList = new ContiguousList<>(NestedBean.class, layout);
+        for (int i = 0; i < 10_000; i++) {
+            beanList.add(new NestedBean(new StringBean("Agrajag " + i), new IntBean(i)));
+        }
+        assertEquals("Agrajag 0", beanList.get(0).getStringBean().getName());
+        assertEquals(1, beanList.getInt(1, beanList.getPropertyHandle("intBean.value")));
+        assertNotNull(beanList.getAsJson(2));
+        assertEquals(10_000, beanList.parallelStream().count());
+        assertEquals(3, beanList.indexOf(new NestedBean(new StringBean("Agrajag 3"), new IntBean(3))));
+        return beanList;
+    }
+
+    @Test
+    void testConcurrentReads() throws Exception {
+        ContiguousList<NestedBean> beanList = new ContiguousList<>(NestedBean.class);
+        for (int i = 0; i < 2_000; i++) {
+            beanList.add(new NestedBean(new StringBean("Eddie " + i), new IntBean(i)));
+        }
+        PropertyHandle value = beanList.getPropertyHandle("intBean.value");
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> readers = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                readers.add(executor.submit(() -> {
+                    Iterator<?> values = beanList.valueIterator();
+                    for (int i = 0; i < 2_000; i++) {
+                        // the iterator keeps its own position, whatever happens in between
+                        assertEquals("Eddie " + i, values.next());
+                        assertEquals(new NestedBean(new StringBean("Eddie " + i), new IntBean(i)), beanList.get(i));
+                        assertEquals(i, values.next());
+                        assertEquals(i, beanList.getInt(i, value));
+                        assertEquals("{stringBean:{\"name\": \"Eddie " + i + "\"}, intBean:{\"value\": " + i + "}}", beanList.getAsJson(i));
+                    }
+                }));
+            }
+            for (Future<?> reader : readers) {
+                reader.get(); // rethrows assertion errors
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
 }
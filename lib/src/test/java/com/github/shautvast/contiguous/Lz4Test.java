@@ -0,0 +1,41 @@
+package com.github.shautvast.contiguous;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class Lz4Test {
+
+    @Test
+    void testRoundTrip() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 10_000; i++) {
+            text.append("Ford Prefect ").append(i % 100).append(';');
+        }
+        byte[] repetitive = text.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] compressed = Lz4.compress(repetitive);
+        assertTrue(compressed.length < repetitive.length / 5);
+        assertArrayEquals(repetitive, Lz4.decompress(compressed, repetitive.length));
+
+        byte[] random = new byte[100_000];
+        new Random(42).nextBytes(random);
+        assertArrayEquals(random, Lz4.decompress(Lz4.compress(random), random.length));
+    }
+
+    @Test
+    void testEdgeCases() {
+        for (int length : new int[]{0, 1, 12, 13, 17}) {
+            byte[] bytes = new byte[length];
+            assertArrayEquals(bytes, Lz4.decompress(Lz4.compress(bytes), length));
+        }
+        // a long run of the same byte is a match that overlaps itself
+        byte[] zeroes = new byte[70_000];
+        zeroes[69_999] = 1;
+        byte[] compressed = Lz4.compress(zeroes);
+        assertTrue(compressed.length < 1000);
+        assertArrayEquals(zeroes, Lz4.decompress(compressed, zeroes.length));
+    }
+}
@@ -0,0 +1,116 @@
+package com.github.shautvast.contiguous;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MappedContiguousListTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testReopen() throws IOException {
+        Path file = tempDir.resolve("nested.cl");
+        try (MappedContiguousList<NestedBean> beanList = new MappedContiguousList<>(NestedBean.class, file)) {
+            for (int i = 0; i < 1000; i++) {
+                beanList.add(new NestedBean(new StringBean("Deep Thought " + i), new IntBean(i)));
+            }
+        }
+
+        try (MappedContiguousList<NestedBean> beanList = new MappedContiguousList<>(NestedBean.class, file)) {
+            assertEquals(1000, beanList.size());
+            assertEquals(new NestedBean(new StringBean("Deep Thought 42"), new IntBean(42)), beanList.get(42));
+
+            beanList.add(new NestedBean(new StringBean("Earth"), new IntBean(1000)));
+        }
+
+        try (MappedContiguousList<NestedBean> beanList = MappedContiguousList.openReadOnly(NestedBean.class, file)) {
+            assertEquals(1001, beanList.size());
+            assertEquals(new NestedBean(new StringBean("Deep Thought 999"), new IntBean(999)), beanList.get(999));
+            assertEquals("Earth", beanList.get(1000).getStringBean().getName());
+        }
+    }
+
+    @Test
+    public void testFlushedStateSurvives() throws IOException {
+        Path file = tempDir.resolve("flushed.cl");
+        try (MappedContiguousList<NestedBean> beanList = new MappedContiguousList<>(NestedBean.class, file)) {
+            for (int i = 0; i < 1000; i++) {
+                beanList.add(new NestedBean(new StringBean("Deep Thought " + i), new IntBean(i)));
+            }
+            beanList.flush();
+            // not flushed, as if the process dies now. Grows past the mappings of both files
+            for (int i = 1000; i < 100_000; i++) {
+                beanList.add(new NestedBean(new StringBean("Deep Thought " + i), new IntBean(i)));
+            }
+
+            try (MappedContiguousList<NestedBean> reader = MappedContiguousList.openReadOnly(NestedBean.class, file)) {
+                assertEquals(1000, reader.size());
+                for (int i = 0; i < 1000; i++) {
+                    assertEquals(new NestedBean(new StringBean("Deep Thought " + i), new IntBean(i)), reader.get(i));
+                }
+            }
+
+            beanList.sortBy("intBean.value", true);
+            assertThrows(IllegalArgumentException.class, () -> MappedContiguousList.openReadOnly(NestedBean.class, file));
+            beanList.flush();
+            try (MappedContiguousList<NestedBean> reader = MappedContiguousList.openReadOnly(NestedBean.class, file)) {
+                assertEquals(100_000, reader.size());
+                assertEquals(99_999, reader.get(0).getIntBean().getValue());
+            }
+        }
+    }
+
+    @Test
+    public void testFlushThenAdd() throws IOException {
+        Path file = tempDir.resolve("strings.cl");
+        try (MappedContiguousList<String> strings = new MappedContiguousList<>(String.class, file)) {
+            strings.add("Marvin");
+            strings.flush();
+            strings.add("Eddie");
+            assertEquals(Arrays.asList("Marvin", "Eddie"), new ArrayList<>(strings));
+        }
+        try (MappedContiguousList<String> strings = MappedContiguousList.openReadOnly(String.class, file)) {
+            assertEquals(Arrays.asList("Marvin", "Eddie"), new ArrayList<>(strings));
+        }
+    }
+
+    @Test
+    public void testReadOnly() throws IOException {
+        Path file = tempDir.resolve("strings.cl");
+        try (MappedContiguousList<String> strings = new MappedContiguousList<>(String.class, file)) {
+            strings.add("Marvin");
+        }
+        try (MappedContiguousList<String> strings = MappedContiguousList.openReadOnly(String.class, file)) {
+            assertThrows(UnsupportedOperationException.class, () -> strings.add("Eddie"));
+            assertThrows(UnsupportedOperationException.class, strings::clear);
+            assertEquals(Collections.singletonList("Marvin"), new ArrayList<>(strings));
+        }
+        assertThrows(NoSuchFileException.class, () -> MappedContiguousList.openReadOnly(String.class, tempDir.resolve("none.cl")));
+    }
+
+    @Test
+    public void testNoDictionary() throws IOException {
+        try (MappedContiguousList<StringBean> beans = new MappedContiguousList<>(StringBean.class, tempDir.resolve("beans.cl"))) {
+            assertThrows(UnsupportedOperationException.class, () -> beans.enableDictionary("name"));
+        }
+    }
+
+    @Test
+    public void testWrongType() throws IOException {
+        Path file = tempDir.resolve("strings.cl");
+        try (MappedContiguousList<String> strings = new MappedContiguousList<>(String.class, file)) {
+            strings.add("Marvin");
+        }
+        assertThrows(IllegalArgumentException.class, () -> new MappedContiguousList<>(Integer.class, file));
+    }
+}